@@ -0,0 +1,71 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.benchmark;
+
+import com.divisionind.bprm.BackpackObject;
+import com.divisionind.bprm.PotentialBackpackItem;
+import com.divisionind.bprm.StandInServer;
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.Inventory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving the contents of a backpack to its item and opening them again, at the three backpack sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BackpackDataBenchmark {
+
+    private static final String TITLE = "Backpack";
+
+    @Param({"9", "27", "54"})
+    public int slots;
+
+    private Inventory inventory;
+    private PotentialBackpackItem writing;
+    private PotentialBackpackItem reading;
+
+    @Setup
+    public void setup() throws Exception {
+        StandInServer.start();
+
+        inventory = Bukkit.createInventory(null, slots, TITLE);
+        inventory.setContents(StandInServer.contents(slots));
+
+        writing = new PotentialBackpackItem(BackpackObject.LARGE.getItem());
+
+        PotentialBackpackItem filled = new PotentialBackpackItem(BackpackObject.LARGE.getItem());
+        filled.setData(inventory, TITLE);
+        reading = new PotentialBackpackItem(filled.getModifiedItem());
+    }
+
+    @Benchmark
+    public PotentialBackpackItem setData() throws Exception {
+        writing.setData(inventory, TITLE);
+        return writing;
+    }
+
+    @Benchmark
+    public Inventory getDataAsInventory() throws Exception {
+        return reading.getDataAsInventory();
+    }
+}
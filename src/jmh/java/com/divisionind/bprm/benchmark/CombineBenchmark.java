@@ -0,0 +1,131 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.benchmark;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import com.divisionind.bprm.BackpackObject;
+import com.divisionind.bprm.PotentialBackpackItem;
+import com.divisionind.bprm.StandInServer;
+import com.divisionind.bprm.events.BackpackCraftEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.event.inventory.PrepareItemCraftEvent;
+import org.bukkit.inventory.CraftingInventory;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryView;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A player putting a backpack and something it can be combined with into the crafting grid. Either a backpack and a
+ * chestplate or a combined backpack and another backpack.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CombineBenchmark {
+
+    @Param({"CHESTPLATE", "COMBINED"})
+    public String combine;
+
+    private BackpackCraftEvent listener;
+    private PrepareItemCraftEvent event;
+
+    @Setup
+    public void setup() throws Exception {
+        StandInServer.start();
+
+        ItemStack[] matrix = new ItemStack[9];
+        if (combine.equals("CHESTPLATE")) {
+            PotentialBackpackItem backpack = new PotentialBackpackItem(BackpackObject.SMALL.getItem());
+            Inventory contents = Bukkit.createInventory(null, 9, "Small Backpack");
+            contents.setContents(StandInServer.contents(9));
+            backpack.setData(contents, "Small Backpack");
+            matrix[3] = backpack.getModifiedItem();
+            matrix[5] = new ItemStack(Material.IRON_CHESTPLATE);
+        } else {
+            matrix[3] = BackpackObject.COMBINED.getItem();
+            matrix[5] = BackpackObject.SMALL.getItem();
+        }
+
+        CraftingInventory inventory = craftingInventory(matrix);
+        HumanEntity player = MockBukkit.getMock().addPlayer();
+        listener = new BackpackCraftEvent();
+        event = new PrepareItemCraftEvent(inventory, new InventoryView() {
+            @Override
+            public Inventory getTopInventory() {
+                return inventory;
+            }
+
+            @Override
+            public Inventory getBottomInventory() {
+                return player.getInventory();
+            }
+
+            @Override
+            public HumanEntity getPlayer() {
+                return player;
+            }
+
+            @Override
+            public InventoryType getType() {
+                return InventoryType.WORKBENCH;
+            }
+
+            @Override
+            public String getTitle() {
+                return "Crafting";
+            }
+        }, false);
+    }
+
+    @Benchmark
+    public ItemStack prepareCraft() {
+        listener.onPotentialCombineBackpack(event);
+        return event.getInventory().getResult();
+    }
+
+    /**
+     * @return a crafting grid with the matrix that only remembers its result
+     */
+    private static CraftingInventory craftingInventory(ItemStack[] matrix) {
+        ItemStack[] result = new ItemStack[1];
+
+        return (CraftingInventory) Proxy.newProxyInstance(CombineBenchmark.class.getClassLoader(),
+                new Class[] {CraftingInventory.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getMatrix": return matrix.clone();
+                        case "getResult": return result[0];
+                        case "setResult":
+                            result[0] = (ItemStack) args[0];
+                            return null;
+                        case "getType": return InventoryType.WORKBENCH;
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "equals": return proxy == args[0];
+                        case "toString": return "CraftingInventory";
+                        default: throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
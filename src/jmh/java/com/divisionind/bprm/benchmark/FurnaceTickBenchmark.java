@@ -0,0 +1,72 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.benchmark;
+
+import com.divisionind.bprm.StandInServer;
+import com.divisionind.bprm.VirtualFurnace;
+import com.divisionind.bprm.furnace.FurnacePool;
+import com.divisionind.bprm.furnace.FurnaceTicker;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One server tick of {@link FurnaceTicker} with a number of open, smelting furnace backpacks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FurnaceTickBenchmark {
+
+    @Param({"1", "64", "512"})
+    public int furnaces;
+
+    private long tick;
+
+    @Setup(Level.Iteration)
+    public void setup() throws Exception {
+        StandInServer.start();
+        FurnaceTicker.configure(1, 0);
+        FurnaceTicker.VIRTUAL_FURNACES.clear();
+
+        // refilled every iteration, so they are still smelting
+        for (int i = 0; i < furnaces; i++) {
+            Object furnace = FurnacePool.acquire(null);
+            StandInServer.fillFurnace(furnace, "IRON_ORE", "COAL");
+
+            VirtualFurnace virtualFurnace = new VirtualFurnace(furnace);
+            virtualFurnace.setLastTick(tick);
+            FurnaceTicker.VIRTUAL_FURNACES.register(UUID.randomUUID(), virtualFurnace);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        for (Map.Entry<UUID, VirtualFurnace> entry : FurnaceTicker.VIRTUAL_FURNACES.entrySet())
+            FurnacePool.release(entry.getValue().getFurnace());
+        FurnaceTicker.VIRTUAL_FURNACES.clear();
+    }
+
+    @Benchmark
+    public void tick() {
+        FurnaceTicker.getInstance().onTick(++tick);
+    }
+}
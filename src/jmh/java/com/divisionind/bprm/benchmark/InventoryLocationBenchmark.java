@@ -0,0 +1,101 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.benchmark;
+
+import com.divisionind.bprm.BackpackObject;
+import com.divisionind.bprm.PotentialBackpackItem;
+import com.divisionind.bprm.StandInServer;
+import com.divisionind.bprm.location.InventoryLocation;
+import com.divisionind.bprm.nms.NBTMap;
+import com.divisionind.bprm.nms.reflect.NBTType;
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a tracked backpack back into a full inventory, either to the slot it was last seen in or after scanning for
+ * it (a fresh location that has not seen the backpack yet).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InventoryLocationBenchmark {
+
+    private static final int SLOTS = 54;
+    private static final int BACKPACK_SLOT = 40;
+
+    @Param({"HINTED", "SCAN"})
+    public String lookup;
+
+    private Inventory inventory;
+    private InventoryLocation hinted;
+    private ItemStack current;
+    private ItemStack next;
+
+    @Setup
+    public void setup() throws Exception {
+        StandInServer.start();
+
+        // two versions of the same backpack, each replace swaps one for the other
+        PotentialBackpackItem backpack = new PotentialBackpackItem(BackpackObject.FURNACE.getItem());
+        backpack.assignBackpackId();
+        current = backpack.getModifiedItem();
+        backpack.setNBT(NBTType.STRING, "furnace_id", "6f3c0b1e-8a43-4f5e-a0b5-2f6d3e9c1a77");
+        next = backpack.getModifiedItem();
+
+        inventory = Bukkit.createInventory(null, SLOTS, "Inventory");
+        inventory.setContents(StandInServer.contents(SLOTS));
+        inventory.setItem(BACKPACK_SLOT, current);
+
+        hinted = new FixedInventoryLocation(inventory, BACKPACK_SLOT);
+    }
+
+    @Benchmark
+    public ItemStack replace() throws Exception {
+        InventoryLocation location = lookup.equals("HINTED") ? hinted : new FixedInventoryLocation(inventory, -1);
+        location.replace(item -> next, current);
+
+        ItemStack replaced = current;
+        current = next;
+        next = replaced;
+        return current;
+    }
+
+    private static class FixedInventoryLocation extends InventoryLocation {
+
+        private final Inventory inventory;
+
+        private FixedInventoryLocation(Inventory inventory, int lastKnownSlot) {
+            super(lastKnownSlot);
+            this.inventory = inventory;
+        }
+
+        @Override
+        public Inventory resolveInventory() {
+            return inventory;
+        }
+
+        @Override
+        public void save(NBTMap map) {
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.benchmark;
+
+import com.divisionind.bprm.StandInServer;
+import com.divisionind.bprm.nms.NBTMap;
+import com.divisionind.bprm.nms.reflect.NBTType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and writing a single value of every {@link NBTType} through {@link NBTMap}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NBTMapBenchmark {
+
+    private static final String KEY = "backpack_value";
+
+    @Param({"BYTE", "SHORT", "INT", "LONG", "FLOAT", "DOUBLE", "BOOLEAN", "STRING", "BYTE_ARRAY", "INT_ARRAY",
+            "COMPOUND"})
+    public String type;
+
+    private NBTType nbtType;
+    private NBTMap map;
+    private Object value;
+
+    @Setup
+    public void setup() throws Exception {
+        StandInServer.start();
+
+        nbtType = NBTType.valueOf(type);
+        map = new NBTMap();
+        value = valueOf(nbtType);
+        map.setNBT(nbtType, KEY, value);
+    }
+
+    @Benchmark
+    public void set() throws Exception {
+        map.setNBT(nbtType, KEY, value);
+    }
+
+    @Benchmark
+    public Object get() throws Exception {
+        return map.getNBT(nbtType, KEY);
+    }
+
+    private static Object valueOf(NBTType type) throws Exception {
+        switch (type) {
+            case BYTE: return (byte) 6;
+            case SHORT: return (short) 200;
+            case INT: return 42;
+            case LONG: return 1567890123456L;
+            case FLOAT: return 30F;
+            case DOUBLE: return 0.7D;
+            case BOOLEAN: return true;
+            case STRING: return "6f3c0b1e-8a43-4f5e-a0b5-2f6d3e9c1a77";
+            case BYTE_ARRAY: return new byte[1024];
+            case INT_ARRAY: return new int[] {1, 2, 3, 4};
+            case COMPOUND:
+                NBTMap compound = new NBTMap();
+                compound.setShort("BurnTime", (short) 1600);
+                return compound.getTagCompound();
+            default: throw new IllegalArgumentException(type.name());
+        }
+    }
+}
@@ -18,17 +18,12 @@
 
 package com.divisionind.bprm;
 
-import com.divisionind.bprm.nms.KnownVersion;
-import com.divisionind.bprm.nms.reflect.NMS;
-import com.divisionind.bprm.nms.reflect.NMSClass;
-import com.divisionind.bprm.nms.reflect.NMSMethod;
-import com.mojang.authlib.GameProfile;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
  * A wrapper for the player class that allows for offline player data modification
@@ -37,68 +32,32 @@ public class AlwaysPlayer {
 
     private final UUID playerId;
 
-    private Player lastPlayer;
-    private boolean isOfflinePlayer;
-
     public AlwaysPlayer(UUID playerId) {
         this.playerId = playerId;
     }
 
-    public Player resolvePlayer() {
-        Player player = Bukkit.getPlayer(playerId);
-
-        if (player == null) {
-            OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(playerId);
-
-            if (offlinePlayer.hasPlayedBefore()) {
-                GameProfile gameProfile = new GameProfile(playerId, offlinePlayer.getName());
-                //MinecraftServer server = ((CraftServer)Bukkit.getServer()).getServer();
-                //WorldServer worldServer = server.getWorldServer(DimensionManager.OVERWORLD);
-                //EntityPlayer entityPlayer = new EntityPlayer(server, worldServer, gameProfile,
-                //  new PlayerInteractManager(worldServer));
-                //player = entityPlayer.getBukkitEntity();
-                try {
-                    Object craftServer = NMSClass.CraftServer.getClazz().cast(Bukkit.getServer());
-                    Object dedicatedServer = NMSMethod.getServer.getMethod().invoke(craftServer);
-                    Object worldServer = NMS.getWorldServer(dedicatedServer);
-                    Object entityPlayer;
-
-                    if (KnownVersion.v1_17_R1.before()) {
-                        Object playerInteractManager = NMSClass.PlayerInteractManager.getClazz()
-                                .getConstructor(NMSClass.WorldServer.getClazz())
-                                .newInstance(worldServer);
-                        entityPlayer = NMSClass.EntityPlayer.getClazz()
-                                .getConstructor(NMSClass.MinecraftServer.getClazz(), NMSClass.WorldServer.getClazz(),
-                                        gameProfile.getClass(), NMSClass.PlayerInteractManager.getClazz())
-                                .newInstance(dedicatedServer, worldServer, gameProfile, playerInteractManager);
-                    } else {
-                        entityPlayer = NMSClass.EntityPlayer.getClazz()
-                                .getConstructor(NMSClass.MinecraftServer.getClazz(), NMSClass.WorldServer.getClazz(),
-                                        gameProfile.getClass())
-                                .newInstance(dedicatedServer, worldServer, gameProfile);
-                    }
-
-                    player = (Player) NMSMethod.getBukkitEntity.getMethod().invoke(entityPlayer);
-                } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException
-                        | InstantiationException e) {
-                    e.printStackTrace();
-                    return null;
-                }
-
-                player.loadData();
-                isOfflinePlayer = true;
-                return lastPlayer = player; // just trying some stuff
-            }
-        }
+    /**
+     * @return the player or null if they are offline
+     */
+    public Player getOnlinePlayer() {
+        return Bukkit.getPlayer(playerId);
+    }
 
-        isOfflinePlayer = false;
-        return lastPlayer = player;
+    /**
+     * Modifies the player. If they are online, this happens right away. Otherwise it happens once their data has been
+     * loaded by the {@link OfflinePlayerService}.
+     *
+     * @param action modification to make
+     */
+    public void modify(Consumer<Player> action) {
+        Player player = getOnlinePlayer();
+        if (player != null) {
+            action.accept(player);
+        } else OfflinePlayerService.modify(playerId, action);
     }
 
-    public void safeSave() {
-        if (isOfflinePlayer) {
-            lastPlayer.saveData();
-        }
+    public UUID getPlayerId() {
+        return playerId;
     }
 
     public String getName() {
@@ -18,7 +18,6 @@
 
 package com.divisionind.bprm;
 
-import com.divisionind.bprm.nms.reflect.NMS;
 import org.bukkit.entity.HumanEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.InventoryCloseEvent;
@@ -37,8 +36,8 @@ public abstract class BackpackHandler {
 
     /**
      * Runs when the backpack has been closed. Note: This depends on the
-     * inventory containing the {@link FakeBackpackViewer} entity and therefore
-     * it should always be added to backpacks when they are opened
+     * inventory being registered with {@link BackpackViewers} and therefore
+     * it should always be registered when backpacks are opened
      *
      * @param e bukkit inventory close event instance
      * @param backpack backpack item in question
@@ -59,7 +58,10 @@ public abstract class BackpackHandler {
      * @throws Exception if there was a problem finalizing the opening of the backpack
      */
     public void finalizeBackpackOpen(HumanEntity p, Inventory inv, PotentialBackpackItem pbi) throws Exception {
-        inv.getViewers().add(NMS.createFakeViewer(pbi));
+        BackpackViewers.register(inv, pbi);
         p.openInventory(inv);
+
+        // another plugin might have cancelled the open, no close event will come for it
+        if (!inv.equals(p.getOpenInventory().getTopInventory())) BackpackViewers.remove(inv);
     }
 }
@@ -58,6 +58,7 @@ public enum BackpackObject {
     void init(String name, List<String> lore) {
         this.lore = lore;
         this.item = getBackpack(color, type, name, lore);
+        if (item != null) BackpackProbe.registerMaterial(item.getType());
     }
 
     public ItemStack getItem() {
@@ -0,0 +1,192 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm;
+
+import com.divisionind.bprm.nms.NBTMap;
+import com.divisionind.bprm.nms.reflect.NMS;
+import com.divisionind.bprm.nms.reflect.NMSClass;
+import com.divisionind.bprm.nms.reflect.NMSMethod;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Read-only checks for whether an item is a backpack. Unlike {@link PotentialBackpackItem}, this does not copy
+ * the item (or attach a new tag to it). For a CraftItemStack, the tag of the NMS item behind it is read directly.
+ *
+ * Use this to quickly reject items in events and only create a {@link PotentialBackpackItem} when the item actually
+ * needs to be modified.
+ */
+public class BackpackProbe {
+
+    public static final int NOT_A_BACKPACK = -1;
+
+    /**
+     * Materials a backpack can be combined with (all chestplates and the elytra).
+     */
+    public static final Set<Material> COMBINABLE;
+
+    /**
+     * Every material a backpack item could have. Items of any other material are never backpacks.
+     */
+    private static final Set<Material> MATERIALS;
+
+    static {
+        Set<Material> combinable = EnumSet.noneOf(Material.class);
+
+        // scan for available chestplate materials
+        for (Material material : Material.values()) {
+            if (material.name().toLowerCase().contains("chestplate")
+                    && !material.getClass().isAnnotationPresent(Deprecated.class))
+                combinable.add(material);
+        }
+        combinable.add(Material.ELYTRA);
+
+        COMBINABLE = Collections.unmodifiableSet(combinable);
+        MATERIALS = EnumSet.copyOf(combinable);
+    }
+
+    /**
+     * Registers the material of a backpack item. Called when the {@link BackpackObject} items are created.
+     */
+    static void registerMaterial(Material material) {
+        MATERIALS.add(material);
+    }
+
+    /**
+     * @param material material of an item
+     * @return false if an item of this material can not possibly be a backpack
+     */
+    public static boolean canBeBackpack(Material material) {
+        return MATERIALS.contains(material);
+    }
+
+    public static boolean canBeBackpack(ItemStack item) {
+        return item != null && MATERIALS.contains(item.getType());
+    }
+
+    /**
+     * @param item item to check
+     * @return the backpack type id of the item or {@link #NOT_A_BACKPACK}
+     */
+    public static int typeOf(ItemStack item) throws InvocationTargetException, IllegalAccessException {
+        if (!canBeBackpack(item) || !item.hasItemMeta())
+            return NOT_A_BACKPACK;
+
+        Object nmsItem = getHandle(item);
+        if (nmsItem == null) {
+            // not backed by an nms item, nothing to cache by
+            return typeOf(readTag(item));
+        }
+
+        Object tag = NMSMethod.getTag.call(nmsItem);
+        if (tag == null)
+            return NOT_A_BACKPACK;
+
+        BackpackTypeCache.Entry entry = BackpackTypeCache.get(nmsItem, tag);
+        if (entry == null) entry = BackpackTypeCache.put(nmsItem, tag, typeOf(new NBTMap(tag)));
+        return entry.getType();
+    }
+
+    public static boolean isBackpack(ItemStack item) throws InvocationTargetException, IllegalAccessException {
+        return typeOf(item) != NOT_A_BACKPACK;
+    }
+
+    /**
+     * Reads the unique id of a backpack without copying the item.
+     *
+     * @param item item to check
+     * @return the id or null if the item is not a backpack with an id
+     */
+    public static UUID idOf(ItemStack item) throws InvocationTargetException, IllegalAccessException {
+        NBTMap tag = readTag(item);
+        if (tag == null || !tag.hasNBT(PotentialBackpackItem.FIELD_NAME_ID_MOST))
+            return null;
+
+        return new UUID(tag.getLong(PotentialBackpackItem.FIELD_NAME_ID_MOST),
+                tag.getLong(PotentialBackpackItem.FIELD_NAME_ID_LEAST));
+    }
+
+    /**
+     * Reads the generation of a backpack without copying the item (see {@link PotentialBackpackItem#getGeneration()}).
+     *
+     * @param item item to check
+     * @return the generation or 0 if the item is not a backpack or was never written to
+     */
+    public static long generationOf(ItemStack item) throws InvocationTargetException, IllegalAccessException {
+        NBTMap tag = readTag(item);
+        return tag == null ? 0 : tag.getLong(PotentialBackpackItem.FIELD_NAME_GENERATION);
+    }
+
+    /**
+     * Drops anything cached for the item. Call this when an item has been replaced by a modified copy of itself.
+     *
+     * @param item item that was replaced
+     */
+    public static void invalidate(ItemStack item) throws IllegalAccessException {
+        Object nmsItem = getHandle(item);
+        if (nmsItem != null) BackpackTypeCache.invalidate(nmsItem);
+    }
+
+    /**
+     * Gets the NBT tag of an item without copying it. DO NOT modify the result, it may be the live tag of the item.
+     *
+     * @param item item to read
+     * @return the tag of the item or null if it has none
+     */
+    public static NBTMap readTag(ItemStack item) throws InvocationTargetException, IllegalAccessException {
+        // no meta means no tag
+        if (!canBeBackpack(item) || !item.hasItemMeta())
+            return null;
+
+        Object nmsItem = getHandle(item);
+        if (nmsItem == null) {
+            // a plain bukkit item keeps its tag in its meta, converting it is unavoidable
+            nmsItem = NMSMethod.asNMSCopy.call(item);
+        }
+
+        if (nmsItem == null)
+            return null;
+
+        Object tag = NMSMethod.getTag.call(nmsItem);
+        return tag == null ? null : new NBTMap(tag);
+    }
+
+    /**
+     * @return the nms item behind a CraftItemStack or null if the item is not backed by one
+     */
+    private static Object getHandle(ItemStack item) throws IllegalAccessException {
+        if (item != null && NMS.CraftItemStack_handle != null && NMSClass.CraftItemStack.getClazz().isInstance(item))
+            return NMS.CraftItemStack_handle.get(item);
+
+        return null;
+    }
+
+    private static int typeOf(NBTMap tag) throws InvocationTargetException, IllegalAccessException {
+        if (tag == null || !tag.hasNBT(PotentialBackpackItem.FIELD_NAME_TYPE))
+            return NOT_A_BACKPACK;
+
+        return tag.getInt(PotentialBackpackItem.FIELD_NAME_TYPE);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Small direct-mapped cache of backpack type lookups keyed by the identity of the NMS item. Entries only hold weak
+ * references, so the cache never keeps an item (or its tag) alive. An entry is only valid while the item still has
+ * the same tag compound it had when the entry was created.
+ */
+public class BackpackTypeCache {
+
+    private static final int SIZE = 256; // must be a power of 2
+    private static final int MASK = SIZE - 1;
+
+    private static final Entry[] ENTRIES = new Entry[SIZE];
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    static Entry get(Object nmsItem, Object tag) {
+        Entry entry = ENTRIES[slot(nmsItem)];
+        if (entry != null && entry.item.get() == nmsItem && entry.tag.get() == tag) {
+            hits.incrementAndGet();
+            return entry;
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    static Entry put(Object nmsItem, Object tag, int type) {
+        Entry entry = new Entry(nmsItem, tag, type);
+        ENTRIES[slot(nmsItem)] = entry;
+        return entry;
+    }
+
+    static void invalidate(Object nmsItem) {
+        int slot = slot(nmsItem);
+        Entry entry = ENTRIES[slot];
+        if (entry != null && entry.item.get() == nmsItem) ENTRIES[slot] = null;
+    }
+
+    public static void clear() {
+        for (int i = 0; i < SIZE; i++) ENTRIES[i] = null;
+        hits.set(0);
+        misses.set(0);
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static int getOccupied() {
+        int occupied = 0;
+        for (Entry entry : ENTRIES) {
+            if (entry != null && entry.item.get() != null) occupied++;
+        }
+        return occupied;
+    }
+
+    public static int getSize() {
+        return SIZE;
+    }
+
+    private static int slot(Object nmsItem) {
+        int h = System.identityHashCode(nmsItem);
+        return (h ^ (h >>> 16)) & MASK;
+    }
+
+    static class Entry {
+        private final WeakReference<Object> item;
+        private final WeakReference<Object> tag;
+        private final int type;
+
+        private Entry(Object item, Object tag, int type) {
+            this.item = new WeakReference<>(item);
+            this.tag = new WeakReference<>(tag);
+            this.type = type;
+        }
+
+        int getType() {
+            return type;
+        }
+    }
+}
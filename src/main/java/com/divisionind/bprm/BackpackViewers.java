@@ -0,0 +1,80 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm;
+
+import org.bukkit.inventory.Inventory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps track of which open inventories are backpacks. Inventory clicks and closes check this for every inventory on
+ * the server, so other inventories are rejected with a single map lookup.
+ *
+ * Bukkit's inventories are keyed by equality. CraftBukkit creates new wrappers for the same inventory all the time,
+ * but they are equal (and have the same hash) as long as they wrap the same container. Entries are removed when the
+ * backpack is closed, so the map only ever holds the backpacks that are currently open.
+ */
+public class BackpackViewers {
+
+    private static final Map<Inventory, FakeBackpackViewer> viewers = new HashMap<>();
+
+    /**
+     * Marks an inventory as the given backpack.
+     *
+     * @param inv inventory the backpack was opened in
+     * @param backpack the backpack
+     * @return the viewer created for the backpack
+     */
+    public static FakeBackpackViewer register(Inventory inv, PotentialBackpackItem backpack) {
+        FakeBackpackViewer viewer = new FakeBackpackViewer(backpack);
+        viewers.put(inv, viewer);
+        return viewer;
+    }
+
+    /**
+     * @param inv any inventory
+     * @return the viewer of the backpack or null if the inventory is not a backpack
+     */
+    public static FakeBackpackViewer get(Inventory inv) {
+        if (inv == null || viewers.isEmpty())
+            return null;
+
+        return viewers.get(inv);
+    }
+
+    /**
+     * @param inv inventory to no longer treat as a backpack
+     * @return the viewer that was removed or null if the inventory was not a backpack
+     */
+    public static FakeBackpackViewer remove(Inventory inv) {
+        if (inv == null || viewers.isEmpty())
+            return null;
+
+        return viewers.remove(inv);
+    }
+
+    public static int size() {
+        return viewers.size();
+    }
+
+    public static void clear() {
+        viewers.clear();
+    }
+}
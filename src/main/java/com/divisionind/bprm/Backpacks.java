@@ -21,9 +21,17 @@ package com.divisionind.bprm;
 import com.divisionind.bprm.adapters.AdaptorGriefPrevention;
 import com.divisionind.bprm.commands.*;
 import com.divisionind.bprm.events.*;
-import com.divisionind.bprm.events.custom.GameTickEvent;
+import com.divisionind.bprm.furnace.FurnacePersistence;
+import com.divisionind.bprm.furnace.FurnacePool;
+import com.divisionind.bprm.furnace.FurnaceTicker;
+import com.divisionind.bprm.location.GroundItemIndex;
 import com.divisionind.bprm.nms.KnownVersion;
+import com.divisionind.bprm.nms.reflect.FuzzyClassResolver;
 import com.divisionind.bprm.nms.reflect.NMS;
+import com.divisionind.bprm.nms.reflect.NMSMappings;
+import com.divisionind.bprm.scheduler.TickScheduler;
+import com.divisionind.bprm.storage.AsyncBackpackSaver;
+import com.divisionind.bprm.storage.DataCompression;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
@@ -43,7 +51,7 @@ public class Backpacks extends JavaPlugin {
     public static final String VERSION = "@DivisionVersion@";
     public static final String GIT_HASH = "@DivisionGitHash@";
     public static final String GIT_NUM = "@DivisionGitComm@";
-    public static final int CONFIGURATION_VERSION = 8;
+    public static final int CONFIGURATION_VERSION = 9;
 
     public static ResourceBundle bundle;
     public static int MAX_COMBINED_BACKPACKS;
@@ -66,8 +74,12 @@ public class Backpacks extends JavaPlugin {
         saveDefaultConfig();
         setupFromConfig();
 
-        // initialize game ticking with this plugin
-        GameTickEvent.initialize(this);
+        // initialize game ticking with this plugin (only runs while something is subscribed)
+        TickScheduler.initialize(this);
+
+        // worker threads for encoding closed backpacks and loading offline players
+        AsyncBackpackSaver.initialize(this);
+        OfflinePlayerService.initialize(this);
 
         registerCommands(new CHelp(),
                 new CInfo(),
@@ -78,7 +90,8 @@ public class Backpacks extends JavaPlugin {
                 new CSplit(),
                 new CMaterialsList(),
                 new CMaterialsSearch(),
-                new CVFurnace());
+                new CVFurnace(),
+                new CStats());
 
         getAdaptorManager().registerAdaptors(AdaptorGriefPrevention.class);
 
@@ -87,7 +100,7 @@ public class Backpacks extends JavaPlugin {
                 new BackpackOpenCloseEvent(),
                 new BackpackLinkEvent(),
                 new BackpackInvClickEvent(),
-                new BackpackFurnaceTickEvent());
+                new OfflinePlayerService.LoginListener());
         if (!KnownVersion.v1_16_R1.before())
             registerEvents(new com.divisionind.bprm.events.BackpackNetheriteUpgrade());
 
@@ -102,7 +115,10 @@ public class Backpacks extends JavaPlugin {
         }
 
         getLogger().info(String.format("Detected NMS %s. Using this for all NMS related functions.", KnownVersion.VERSION));
+        FuzzyClassResolver.setIndexCache(new File(getDataFolder(), "class-index.dat"));
+        NMSMappings.setSnapshot(new File(getDataFolder(), "nms-mappings.dat"), VERSION + "-" + GIT_HASH);
         List<Exception> nmsExceptions = NMS.initialize();
+        getLogger().info(NMS.getInitializationReport());
         if (nmsExceptions.size() > 0) {
             getLogger().severe(nmsExceptions.size() + " error(s) initializing NMS. Was the detected server wrong? " +
                     "If not, then NMS has changed significantly sense this plugin was released and therefore, " +
@@ -124,6 +140,13 @@ public class Backpacks extends JavaPlugin {
     @Override
     public void onDisable() {
         // TODO look for any open backpacks and close them gracefully (to prevent possible dupe)
+        FurnacePersistence.stop();
+        AsyncBackpackSaver.shutdown();
+        OfflinePlayerService.shutdown();
+        TickScheduler.shutdown();
+        FurnacePool.clear();
+        BackpackViewers.clear();
+        GroundItemIndex.clear();
         getLogger().info(String.format("BackpacksRemastered v%s (git: %s) has been disabled.", VERSION, GIT_HASH));
     }
 
@@ -184,6 +207,9 @@ public class Backpacks extends JavaPlugin {
     public void onPostLoad() {
         // this code is executed after every plugin has been loaded
         getAdaptorManager().reloadAdaptors();
+
+        // restore the virtual furnaces that were running when the server stopped
+        FurnacePersistence.start(this);
     }
 
     public void setupFromConfig() {
@@ -222,6 +248,17 @@ public class Backpacks extends JavaPlugin {
 
         MAX_COMBINED_BACKPACKS = getConfig().getInt("maxNumberOfCombinedBackpacks");
         if (MAX_COMBINED_BACKPACKS > 9 || MAX_COMBINED_BACKPACKS < 1) MAX_COMBINED_BACKPACKS = 9;
+
+        DataCompression.configure(getConfig().getBoolean("compression.enabled", true),
+                getConfig().getInt("compression.threshold", 512));
+        FurnaceTicker.configure(getConfig().getInt("furnaceTicking.shards", 1),
+                getConfig().getLong("furnaceTicking.budget", 0));
+        AsyncBackpackSaver.configure(getConfig().getBoolean("asyncSave.enabled", true),
+                getConfig().getInt("asyncSave.threads", 1));
+        OfflinePlayerService.configure(getConfig().getInt("offlinePlayers.cacheSize", 16),
+                getConfig().getLong("offlinePlayers.saveDelay", 100));
+        FurnacePersistence.configure(getConfig().getBoolean("furnacePersistence.enabled", true),
+                getConfig().getInt("furnacePersistence.interval", 300));
     }
 
     private void registerEvents(Listener... listeners) {
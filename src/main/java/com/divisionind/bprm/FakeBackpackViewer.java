@@ -18,8 +18,30 @@
 
 package com.divisionind.bprm;
 
-import org.bukkit.entity.HumanEntity;
+/**
+ * Marks an open inventory as a backpack. Registered with {@link BackpackViewers} when a backpack is opened.
+ */
+public class FakeBackpackViewer {
+
+    private final PotentialBackpackItem ownerBP;
+    private boolean modified;
+
+    public FakeBackpackViewer(PotentialBackpackItem ownerBP) {
+        this.ownerBP = ownerBP;
+    }
+
+    public PotentialBackpackItem getOwnerBP() {
+        return ownerBP;
+    }
+
+    /**
+     * @return true if the contents of the backpack may have been changed since it was opened
+     */
+    public boolean isModified() {
+        return modified;
+    }
 
-public interface FakeBackpackViewer extends HumanEntity {
-    PotentialBackpackItem getOwnerBP();
+    public void setModified(boolean modified) {
+        this.modified = modified;
+    }
 }
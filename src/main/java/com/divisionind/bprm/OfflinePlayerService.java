@@ -0,0 +1,341 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm;
+
+import com.divisionind.bprm.nms.KnownVersion;
+import com.divisionind.bprm.nms.reflect.NMS;
+import com.divisionind.bprm.nms.reflect.NMSClass;
+import com.divisionind.bprm.nms.reflect.NMSMethod;
+import com.mojang.authlib.GameProfile;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Modifies the data of offline players without blocking the main thread on disk io.
+ *
+ * The player data is loaded on a worker thread, modifications are applied on the main thread once it is loaded and
+ * saved on the worker thread a little later (write-behind), so that several modifications of the same player share
+ * a single load and save. Recently used players are kept in a small LRU cache. While a player is being loaded or saved,
+ * modifications are queued and applied afterwards, the player is never touched by two threads at once.
+ *
+ * A player that logs in while they have unsaved changes is saved synchronously before the server loads their data.
+ */
+public class OfflinePlayerService {
+
+    private enum State {
+        LOADING, READY, SAVING
+    }
+
+    private static final Map<UUID, Entry> cache = new LinkedHashMap<>(16, 0.75F, true);
+
+    private static Plugin plugin;
+    private static ExecutorService io;
+    private static int cacheSize = 16;
+    private static long saveDelay = 100L;
+
+    // statistics
+    private static long loads;
+    private static long saves;
+    private static long batched;
+
+    /**
+     * @param cacheSize maximum number of offline players kept loaded while not in use
+     * @param saveDelayTicks ticks to wait after a modification before saving the player
+     */
+    public static void configure(int cacheSize, long saveDelayTicks) {
+        OfflinePlayerService.cacheSize = Math.max(1, cacheSize);
+        OfflinePlayerService.saveDelay = Math.max(1, saveDelayTicks);
+    }
+
+    public static synchronized void initialize(Plugin plugin) {
+        OfflinePlayerService.plugin = plugin;
+        if (io != null) return;
+
+        // one thread so loads and saves happen in the order they were requested
+        io = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Backpacks Offline Player IO");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Saves every player with pending changes and stops the worker.
+     */
+    public static synchronized void shutdown() {
+        for (Entry entry : new ArrayList<>(cache.values())) flushNow(entry);
+        cache.clear();
+
+        if (io != null) {
+            io.shutdown();
+            io = null;
+        }
+    }
+
+    /**
+     * Modifies an offline player. The action runs on the main thread once the player is loaded, possibly right away.
+     * Must be called on the main thread.
+     *
+     * @param playerId the player
+     * @param action modification to make
+     */
+    public static void modify(UUID playerId, Consumer<Player> action) {
+        Entry entry = cache.get(playerId);
+        if (entry != null) {
+            if (entry.state == State.READY) {
+                action.accept(entry.player);
+                markDirty(entry);
+            } else {
+                entry.pending.add(action);
+                batched++;
+            }
+            return;
+        }
+
+        Player player = create(playerId);
+        if (player == null)
+            return;
+
+        entry = new Entry(playerId, player);
+        entry.pending.add(action);
+        cache.put(playerId, entry);
+        load(entry);
+        evict();
+    }
+
+    /**
+     * Applies and saves everything pending for a player right away. Must be called on the main thread.
+     */
+    public static void flush(UUID playerId) {
+        Entry entry = cache.remove(playerId);
+        if (entry != null) flushNow(entry);
+    }
+
+    private static void load(Entry entry) {
+        entry.state = State.LOADING;
+        loads++;
+        entry.task = CompletableFuture.runAsync(entry.player::loadData, io);
+        entry.task.whenComplete((result, error) -> Bukkit.getScheduler().runTask(plugin, () -> {
+            if (entry.closed) return;
+
+            if (error != null) {
+                // never save a player that could not be loaded, it would wipe their data
+                plugin.getLogger().log(Level.SEVERE, "Failed to load offline player " + entry.playerId, error);
+                entry.closed = true;
+                cache.remove(entry.playerId);
+                return;
+            }
+
+            entry.state = State.READY;
+            applyPending(entry);
+        }));
+    }
+
+    private static void save(Entry entry) {
+        if (entry.closed || entry.state != State.READY || !entry.dirty)
+            return;
+
+        entry.state = State.SAVING;
+        entry.dirty = false;
+        saves++;
+        entry.task = CompletableFuture.runAsync(entry.player::saveData, io);
+        entry.task.whenComplete((result, error) -> Bukkit.getScheduler().runTask(plugin, () -> {
+            if (entry.closed) return;
+
+            if (error != null) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to save offline player " + entry.playerId, error);
+                entry.dirty = true;
+            }
+
+            entry.state = State.READY;
+            applyPending(entry);
+            if (entry.dirty) markDirty(entry);
+            evict();
+        }));
+    }
+
+    private static void applyPending(Entry entry) {
+        if (entry.pending.isEmpty())
+            return;
+
+        for (Consumer<Player> action : entry.pending) action.accept(entry.player);
+        entry.pending.clear();
+        markDirty(entry);
+    }
+
+    private static void markDirty(Entry entry) {
+        entry.dirty = true;
+        if (entry.saveScheduled)
+            return;
+
+        entry.saveScheduled = true;
+        Bukkit.getScheduler().runTaskLater(plugin, () -> {
+            entry.saveScheduled = false;
+            save(entry);
+        }, saveDelay);
+    }
+
+    private static void flushNow(Entry entry) {
+        entry.closed = true;
+        try {
+            if (entry.task != null) entry.task.join();
+        } catch (CompletionException e) {
+            if (entry.state == State.LOADING) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to load offline player " + entry.playerId, e);
+                return;
+            }
+
+            // the last save failed, try again
+            entry.dirty = true;
+        }
+
+        for (Consumer<Player> action : entry.pending) action.accept(entry.player);
+        if (!entry.pending.isEmpty()) entry.dirty = true;
+        entry.pending.clear();
+
+        if (entry.dirty) {
+            entry.player.saveData();
+            entry.dirty = false;
+            saves++;
+        }
+    }
+
+    /**
+     * Removes the least recently used players that have nothing left to do until the cache fits.
+     */
+    private static void evict() {
+        if (cache.size() <= cacheSize)
+            return;
+
+        Iterator<Entry> it = cache.values().iterator();
+        while (cache.size() > cacheSize && it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.state == State.READY && !entry.dirty && entry.pending.isEmpty()) {
+                entry.closed = true;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Creates a player entity for an offline player without loading their data.
+     *
+     * @return the player or null if they have never played on this server
+     */
+    private static Player create(UUID playerId) {
+        OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(playerId);
+        if (!offlinePlayer.hasPlayedBefore())
+            return null;
+
+        GameProfile gameProfile = new GameProfile(playerId, offlinePlayer.getName());
+        //MinecraftServer server = ((CraftServer)Bukkit.getServer()).getServer();
+        //WorldServer worldServer = server.getWorldServer(DimensionManager.OVERWORLD);
+        //EntityPlayer entityPlayer = new EntityPlayer(server, worldServer, gameProfile,
+        //  new PlayerInteractManager(worldServer));
+        //player = entityPlayer.getBukkitEntity();
+        try {
+            Object craftServer = NMSClass.CraftServer.getClazz().cast(Bukkit.getServer());
+            Object dedicatedServer = NMSMethod.getServer.call(craftServer);
+            Object worldServer = NMS.getWorldServer(dedicatedServer);
+            Object entityPlayer;
+
+            if (KnownVersion.v1_17_R1.before()) {
+                Object playerInteractManager = NMSClass.PlayerInteractManager.getClazz()
+                        .getConstructor(NMSClass.WorldServer.getClazz())
+                        .newInstance(worldServer);
+                entityPlayer = NMSClass.EntityPlayer.getClazz()
+                        .getConstructor(NMSClass.MinecraftServer.getClazz(), NMSClass.WorldServer.getClazz(),
+                                gameProfile.getClass(), NMSClass.PlayerInteractManager.getClazz())
+                        .newInstance(dedicatedServer, worldServer, gameProfile, playerInteractManager);
+            } else {
+                entityPlayer = NMSClass.EntityPlayer.getClazz()
+                        .getConstructor(NMSClass.MinecraftServer.getClazz(), NMSClass.WorldServer.getClazz(),
+                                gameProfile.getClass())
+                        .newInstance(dedicatedServer, worldServer, gameProfile);
+            }
+
+            return (Player) NMSMethod.getBukkitEntity.call(entityPlayer);
+        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException
+                | InstantiationException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public static int getCachedCount() {
+        return cache.size();
+    }
+
+    public static long getLoads() {
+        return loads;
+    }
+
+    public static long getSaves() {
+        return saves;
+    }
+
+    public static long getBatched() {
+        return batched;
+    }
+
+    public static void resetStats() {
+        loads = 0;
+        saves = 0;
+        batched = 0;
+    }
+
+    private static class Entry {
+        private final UUID playerId;
+        private final Player player;
+        private final List<Consumer<Player>> pending = new ArrayList<>();
+        private State state;
+        private CompletableFuture<Void> task;
+        private boolean dirty;
+        private boolean saveScheduled;
+        private boolean closed;
+
+        private Entry(UUID playerId, Player player) {
+            this.playerId = playerId;
+            this.player = player;
+        }
+    }
+
+    // registered separately so the server never loads data we are about to overwrite
+    public static class LoginListener implements Listener {
+        @EventHandler(priority = EventPriority.LOWEST)
+        public void onLogin(PlayerLoginEvent e) {
+            flush(e.getPlayer().getUniqueId());
+        }
+    }
+}
@@ -21,7 +21,8 @@ package com.divisionind.bprm;
 import com.divisionind.bprm.exceptions.UnknownBackpackException;
 import com.divisionind.bprm.nms.NMSItemStack;
 import com.divisionind.bprm.nms.reflect.NBTType;
-import org.bukkit.Bukkit;
+import com.divisionind.bprm.storage.InventoryCodec;
+import com.divisionind.bprm.storage.LazyBackpackData;
 import org.bukkit.Location;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
@@ -32,54 +33,102 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.UUID;
 
 public class PotentialBackpackItem extends NMSItemStack {
 
     public static final String FIELD_NAME_TYPE = "backpack_type";
     public static final String FIELD_NAME_DATA = "backpack_data";
+    public static final String FIELD_NAME_ID_MOST = "backpack_id_most";
+    public static final String FIELD_NAME_ID_LEAST = "backpack_id_least";
+    public static final String FIELD_NAME_GENERATION = "backpack_generation";
 
     public PotentialBackpackItem(ItemStack item)
             throws InvocationTargetException, IllegalAccessException, InstantiationException, NoSuchMethodException {
         super(item);
     }
 
+    @Override
+    public ItemStack getModifiedItem() throws InvocationTargetException, IllegalAccessException {
+        // the original item is about to be replaced, forget what was cached about it
+        BackpackProbe.invalidate(getItem());
+        return super.getModifiedItem();
+    }
+
     public boolean isBackpack() throws InvocationTargetException, IllegalAccessException {
         return hasNBT(FIELD_NAME_TYPE);
     }
 
     public int getType() throws IllegalAccessException, InvocationTargetException {
-        return (int) getNBT(NBTType.INT, FIELD_NAME_TYPE);
+        return getInt(FIELD_NAME_TYPE);
     }
 
     public byte[] getData() throws IllegalAccessException, InvocationTargetException {
         return (byte[]) getNBT(NBTType.BYTE_ARRAY, FIELD_NAME_DATA);
     }
 
-    public void setType(int type) throws InvocationTargetException, IllegalAccessException {
-        setNBT(NBTType.INT, FIELD_NAME_TYPE, type);
+    /**
+     * @return the unique id of this backpack or null if it has not been given one
+     */
+    public UUID getBackpackId() throws InvocationTargetException, IllegalAccessException {
+        if (!hasNBT(FIELD_NAME_ID_MOST) || !hasNBT(FIELD_NAME_ID_LEAST))
+            return null;
+
+        return new UUID(getLong(FIELD_NAME_ID_MOST), getLong(FIELD_NAME_ID_LEAST));
     }
 
-    public void setData(byte[] data) throws InvocationTargetException, IllegalAccessException {
-        setNBT(NBTType.BYTE_ARRAY, FIELD_NAME_DATA, data);
+    /**
+     * Gives this backpack a unique id if it does not have one yet. Backpacks that are tracked (e.g. furnace backpacks)
+     * are found by this id.
+     *
+     * @return the id of this backpack
+     */
+    public UUID assignBackpackId() throws InvocationTargetException, IllegalAccessException {
+        UUID id = getBackpackId();
+        if (id == null) {
+            id = UUID.randomUUID();
+            setLong(FIELD_NAME_ID_MOST, id.getMostSignificantBits());
+            setLong(FIELD_NAME_ID_LEAST, id.getLeastSignificantBits());
+        }
+
+        return id;
     }
 
-    public void setData(Inventory inv, String name) throws IOException, InvocationTargetException, IllegalAccessException {
-        // create output streams
-        ByteArrayOutputStream bout = new ByteArrayOutputStream();
-        BukkitObjectOutputStream out = new BukkitObjectOutputStream(bout);
+    /**
+     * @return how many times tracked state (e.g. a virtual furnace) was written back to this backpack, 0 if never
+     */
+    public long getGeneration() throws InvocationTargetException, IllegalAccessException {
+        return getLong(FIELD_NAME_GENERATION);
+    }
 
-        // write view name and inventory size (not storing this info with backpack type for legacy reasons)
-        out.writeInt(inv.getSize());
-        out.writeUTF(name);
+    /**
+     * Counts another write of tracked state to this backpack. Anything tracked from an older generation is outdated
+     * and must not be written back anymore (see {@link com.divisionind.bprm.location.ItemMatcher}).
+     *
+     * @return the new generation
+     */
+    public long nextGeneration() throws InvocationTargetException, IllegalAccessException {
+        long generation = getGeneration() + 1;
+        setLong(FIELD_NAME_GENERATION, generation);
+        return generation;
+    }
 
-        // store items
-        for (int i = 0; i < inv.getSize(); i++) out.writeObject(inv.getItem(i));
+    public void setType(int type) throws InvocationTargetException, IllegalAccessException {
+        setInt(FIELD_NAME_TYPE, type);
+    }
 
-        // flush and close output
-        out.flush();
-        out.close();
+    public void setData(byte[] data) throws InvocationTargetException, IllegalAccessException {
+        setNBT(NBTType.BYTE_ARRAY, FIELD_NAME_DATA, data);
+    }
 
-        setData(bout.toByteArray());
+    public void setData(Inventory inv, String name) throws IOException, InvocationTargetException,
+            IllegalAccessException, InstantiationException, NoSuchMethodException {
+        setData(InventoryCodec.encode(inv.getContents(), name));
+    }
+
+    public void setData(LazyBackpackData data) throws IOException, InvocationTargetException,
+            IllegalAccessException, InstantiationException, NoSuchMethodException {
+        setData(data.toBytes());
     }
 
     public void setData(Location location) throws IOException, InvocationTargetException, IllegalAccessException {
@@ -111,19 +160,12 @@ public class PotentialBackpackItem extends NMSItemStack {
     }
 
     public Inventory getDataAsInventory() throws InvocationTargetException, IllegalAccessException, IOException, ClassNotFoundException {
-        // create input streams
-        ByteArrayInputStream bin = new ByteArrayInputStream(getData());
-        BukkitObjectInputStream in = new BukkitObjectInputStream(bin);
-
-        // create inventory based on stored size / title
-        Inventory inv = Bukkit.getServer().createInventory(null, in.readInt(), in.readUTF());
-
-        // load items from inventory
-        for (int i = 0; i < inv.getSize(); i++) inv.setItem(i, (ItemStack) in.readObject());
+        return InventoryCodec.decode(getData());
+    }
 
-        // close stream, return inventory
-        in.close();
-        return inv;
+    public LazyBackpackData getDataAsLazyInventory() throws InvocationTargetException, IllegalAccessException,
+            IOException, ClassNotFoundException {
+        return LazyBackpackData.read(getData());
     }
 
     public boolean hasData() throws InvocationTargetException, IllegalAccessException {
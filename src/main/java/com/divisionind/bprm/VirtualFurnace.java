@@ -22,6 +22,8 @@ import com.divisionind.bprm.location.ItemStackPointer;
 import com.divisionind.bprm.nms.KnownVersion;
 import com.divisionind.bprm.nms.reflect.NMSMethod;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.InvocationTargetException;
 
 /**
@@ -36,9 +38,32 @@ public class VirtualFurnace {
 
     private ItemStackPointer itemLocation;
 
+    /* generation of the backpack this furnace was last written to, see PotentialBackpackItem.getGeneration() */
+    private long generation;
+
+    /* wake tick values that mean the furnace is not sleeping */
+    public static final long AWAKE = -1;
+    public static final long SLEEPLESS = -2; // could not be fast-forwarded, tick it normally
+
+    /* used to spread furnaces evenly over the tick shards */
+    private static int nextShardKey;
+    private final int shardKey;
+
+    /* the scheduler tick this furnace was last ticked up to */
+    private long lastTick;
+    private boolean deferred;
+
+    /* the tick a released furnace will be done at, it is not ticked until then (see FurnaceFastForward) */
+    private long wakeTick = AWAKE;
+
+    /* tick method with all of its arguments bound, so a tick is a single call */
+    private final MethodHandle tickHandle;
+
     public VirtualFurnace(Object furnace) {
         this.furnace = furnace;
         this.released = false;
+        this.shardKey = nextShardKey++ & Integer.MAX_VALUE;
+        this.tickHandle = bindTick(furnace);
     }
 
     public ItemStackPointer getItemLocation() {
@@ -49,6 +74,14 @@ public class VirtualFurnace {
         this.itemLocation = itemLocation;
     }
 
+    public long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
+
     public Object getFurnace() {
         return furnace;
     }
@@ -56,7 +89,7 @@ public class VirtualFurnace {
     public boolean isBurning() {
         // furnace.burnTime > 0;
         try {
-            return (boolean) NMSMethod.isBurning.getMethod().invoke(furnace);
+            return (boolean) NMSMethod.isBurning.call(furnace);
         } catch (IllegalAccessException | InvocationTargetException e) {
             e.printStackTrace();
             return false;
@@ -64,15 +97,48 @@ public class VirtualFurnace {
     }
 
     public void tick() throws InvocationTargetException, IllegalAccessException {
+        if (tickHandle != null) {
+            try {
+                Object ignored = tickHandle.invokeExact();
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+            return;
+        }
+
         //furnace.tick();
         if (KnownVersion.v1_17_R1.before()) {
-            NMSMethod.tick.getMethod().invoke(furnace);
+            NMSMethod.tick.call(furnace);
         } else {
-            Object world = NMSMethod.getWorld.getMethod().invoke(furnace);
-            Object blockpos = NMSMethod.getPosition.getMethod().invoke(furnace);
-            Object blockdata = NMSMethod.getBlock.getMethod().invoke(furnace);
+            Object world = NMSMethod.getWorld.call(furnace);
+            Object blockpos = NMSMethod.getPosition.call(furnace);
+            Object blockdata = NMSMethod.getBlock.call(furnace);
+
+            NMSMethod.tick.call(world, blockpos, blockdata, furnace);
+        }
+    }
 
-            NMSMethod.tick.getMethod().invoke(null, world, blockpos, blockdata, furnace);
+    /**
+     * Binds the tick method to this furnace. The world, position and block of a virtual furnace never change, so they
+     * are only looked up once.
+     *
+     * @return the bound handle or null if one could not be created
+     */
+    private static MethodHandle bindTick(Object furnace) {
+        MethodHandle handle = NMSMethod.tick.getHandle();
+        if (handle == null)
+            return null;
+
+        try {
+            if (KnownVersion.v1_17_R1.before())
+                return MethodHandles.insertArguments(handle, 0, furnace);
+
+            Object world = NMSMethod.getWorld.call(furnace);
+            Object blockpos = NMSMethod.getPosition.call(furnace);
+            Object blockdata = NMSMethod.getBlock.call(furnace);
+            return MethodHandles.insertArguments(handle, 0, world, blockpos, blockdata, furnace);
+        } catch (InvocationTargetException | IllegalAccessException e) {
+            return null;
         }
     }
 
@@ -83,4 +149,36 @@ public class VirtualFurnace {
     public void setReleased(boolean released) {
         this.released = released;
     }
+
+    public int getShardKey() {
+        return shardKey;
+    }
+
+    public long getLastTick() {
+        return lastTick;
+    }
+
+    public void setLastTick(long lastTick) {
+        this.lastTick = lastTick;
+    }
+
+    public boolean isSleeping() {
+        return wakeTick >= 0;
+    }
+
+    public long getWakeTick() {
+        return wakeTick;
+    }
+
+    public void setWakeTick(long wakeTick) {
+        this.wakeTick = wakeTick;
+    }
+
+    public boolean isDeferred() {
+        return deferred;
+    }
+
+    public void setDeferred(boolean deferred) {
+        this.deferred = deferred;
+    }
 }
\ No newline at end of file
@@ -20,7 +20,7 @@ package com.divisionind.bprm.backpacks;
 
 import com.divisionind.bprm.*;
 import com.divisionind.bprm.events.BackpackOpenCloseEvent;
-import com.divisionind.bprm.nms.reflect.NMS;
+import com.divisionind.bprm.storage.LazyBackpackData;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.InventoryClickEvent;
@@ -40,6 +40,10 @@ public class BPCombined extends BackpackHandler {
         return Bukkit.createInventory(null, 9, NAME);
     }
 
+    public static LazyBackpackData createData() {
+        return LazyBackpackData.create(9, NAME);
+    }
+
     @Override
     public Inventory openBackpack(Player p, PotentialBackpackItem backpack) throws Exception {
         Inventory display;
@@ -69,8 +73,8 @@ public class BPCombined extends BackpackHandler {
                     ACommand.respondf(e.getWhoClicked(), "&cBackpack of type %s does not exist in this version. " +
                             "Why did you downgrade the plugin?", type);
                 } else {
-                    // remove backpack identifier viewer so the onClose event is not triggered by this open event
-                    NMS.removeFakeBackpackViewer(e.getClickedInventory());
+                    // unregister the combined backpack so the onClose event is not triggered by this open event
+                    BackpackViewers.remove(e.getClickedInventory());
 
                     // ensure to force close the inventory right after this or else a duplication glitch
                     //   would be possible
@@ -104,19 +108,26 @@ public class BPCombined extends BackpackHandler {
 
         // get slot from map and backpack item of that slot in the combined backpack
         int slot = openBackpacks.remove(e.getPlayer().getUniqueId());
-        Inventory combinedInv = backpack.getDataAsInventory();
-        ItemStack bpItemInUse = combinedInv.getItem(slot);
+        LazyBackpackData combinedData = backpack.getDataAsLazyInventory();
+        ItemStack bpItemInUse = combinedData.getItem(slot);
         PotentialBackpackItem inUse = new PotentialBackpackItem(bpItemInUse);
 
         // attempt to resolve backpack type to get handler for close, if backpack not found, return
         BackpackObject bpo = inUse.getTypeObject();
         if (bpo == null) return;
 
-        // run that backpacks on close handler and update combinedInv with new item
-        bpo.getHandler().onClose(e, inUse, newItem -> combinedInv.setItem(slot, newItem));
+        // run that backpacks on close handler and update combinedData with new item
+        boolean[] updated = new boolean[1];
+        bpo.getHandler().onClose(e, inUse, newItem -> {
+            combinedData.setItem(slot, newItem);
+            updated[0] = true;
+        });
+
+        // the backpack did not change, neither did the combined backpack
+        if (!updated[0]) return;
 
-        // update the combined backpacks data
-        backpack.setData(combinedInv, NAME);
+        // update the combined backpacks data (only the slot that changed gets re-encoded)
+        backpack.setData(combinedData);
 
         callback.update(backpack.getModifiedItem());
     }
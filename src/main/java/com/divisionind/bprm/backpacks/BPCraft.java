@@ -19,9 +19,9 @@
 package com.divisionind.bprm.backpacks;
 
 import com.divisionind.bprm.BackpackHandler;
+import com.divisionind.bprm.BackpackViewers;
 import com.divisionind.bprm.PotentialBackpackItem;
 import com.divisionind.bprm.UpdateItemCallback;
-import com.divisionind.bprm.nms.reflect.NMS;
 import org.bukkit.entity.HumanEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.InventoryCloseEvent;
@@ -46,6 +46,6 @@ public class BPCraft extends BackpackHandler {
     @Override
     public void finalizeBackpackOpen(HumanEntity p, Inventory inv, PotentialBackpackItem pbi) throws Exception {
         // we do not want to open the backpack here because it was probably already opened
-        inv.getViewers().add(NMS.createFakeViewer(pbi));
+        BackpackViewers.register(inv, pbi);
     }
 }
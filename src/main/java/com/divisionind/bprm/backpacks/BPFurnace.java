@@ -22,22 +22,26 @@ import com.divisionind.bprm.BackpackHandler;
 import com.divisionind.bprm.PotentialBackpackItem;
 import com.divisionind.bprm.UpdateItemCallback;
 import com.divisionind.bprm.VirtualFurnace;
-import com.divisionind.bprm.events.BackpackFurnaceTickEvent;
+import com.divisionind.bprm.furnace.FurnaceFastForward;
+import com.divisionind.bprm.furnace.FurnacePersistence;
+import com.divisionind.bprm.furnace.FurnacePool;
+import com.divisionind.bprm.furnace.FurnaceTicker;
 import com.divisionind.bprm.location.ItemStackPointer;
 import com.divisionind.bprm.location.itemlocs.InventoryLocationPlayer;
 import com.divisionind.bprm.nms.KnownVersion;
 import com.divisionind.bprm.nms.NBTMap;
 import com.divisionind.bprm.nms.reflect.NBTType;
-import com.divisionind.bprm.nms.reflect.NMS;
 import com.divisionind.bprm.nms.reflect.NMSClass;
 import com.divisionind.bprm.nms.reflect.NMSMethod;
-import org.bukkit.Bukkit;
+import com.divisionind.bprm.scheduler.TickScheduler;
 import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.inventory.FurnaceInventory;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.AbstractMap;
 import java.util.Map;
 import java.util.UUID;
 
@@ -51,60 +55,60 @@ public class BPFurnace extends BackpackHandler {
         Object furnace = null;
         if (backpack.hasNBT("furnace_id")) {
             UUID id = UUID.fromString((String) backpack.getNBT(NBTType.STRING, "furnace_id"));
-            VirtualFurnace vFern = BackpackFurnaceTickEvent.VIRTUAL_FURNACES.get(id);
+            // the furnace may not have been restored since the last start yet
+            FurnacePersistence.restoreNow(id);
+            VirtualFurnace vFern = FurnaceTicker.VIRTUAL_FURNACES.acquire(id);
+
+            if (vFern != null && vFern.getGeneration() < backpack.getGeneration()) {
+                // the backpack was written to after this furnace was saved (e.g. it was restored from before a crash),
+                // what it smelted is already in the backpack
+                FurnaceTicker.discard(id);
+                vFern = null;
+            }
 
             if (vFern != null) {
-                // virtual furnace identified
+                // virtual furnace identified, bring it up to date if it was fast-forwarding
+                FurnaceFastForward.wake(vFern, TickScheduler.getCurrentTick());
                 furnace = vFern.getFurnace();
-                vFern.setReleased(false);
             }
         }
 
         // contains the magic that makes our virtual furnace
         if (furnace == null) {
-            // create fake furnace tile entity
-            if (KnownVersion.v1_14_R1.before()) {
-                // furnace = new TileEntityFurnace(); // only works pre-1.14
-                furnace = NMSClass.TileEntityFurnace.getClazz().getDeclaredConstructor().newInstance();
-            } else
-            if (KnownVersion.v1_17_R1.before()) {
-                // furnace = new TileEntityFurnaceFurnace();
-                furnace = NMSClass.TileEntityFurnaceFurnace.getClazz().getDeclaredConstructor().newInstance();
-            } else {
-                // this would probably work back to v1_14_R1 but ehh I cant be bothered testing
-                furnace = NMSClass.CraftTileInventoryConverter_Furnace.getClazz().getDeclaredConstructor().newInstance();
-                furnace = NMSMethod.getTileEntity.getMethod().invoke(furnace);
-            }
-            // assign it a dimension
-            Object craftServer = NMSClass.CraftServer.getClazz().cast(Bukkit.getServer());
-            Object dedicatedServer = NMSMethod.getServer.getMethod().invoke(craftServer);
-            Object worldServer = NMS.getWorldServer(dedicatedServer);
-            NMS.TileEntity_world.set(furnace, worldServer);
-
-            if (backpack.hasNBT("furnace_data")) {
-                //furnace.load((NBTTagCompound) backpack.getAsMap("furnace_data").getTagCompound());
-                Object furnaceDataTC = backpack.getAsMap("furnace_data").getTagCompound();
-                if (KnownVersion.v1_16_R1.before()) {
-                    NMSMethod.load.getMethod().invoke(furnace, furnaceDataTC);
-                } else
-                if (KnownVersion.v1_17_R1.before()) {
-                    NMSMethod.load.getMethod().invoke(furnace, null, furnaceDataTC);
-                } else {
-                    NMSMethod.load.getMethod().invoke(furnace, furnaceDataTC); // back to old method, make up your mind
-                }
-            }
+            furnace = FurnacePool.acquire(backpack.hasNBT("furnace_data") ?
+                    backpack.getAsMap("furnace_data").getTagCompound() : null);
 
             UUID furnaceId = UUID.randomUUID();
-            BackpackFurnaceTickEvent.VIRTUAL_FURNACES.put(furnaceId, new VirtualFurnace(furnace));
+            FurnaceTicker.track(furnaceId, new VirtualFurnace(furnace));
         }
 
 
-        // create an inventory to represent the furnace
+        return createInventory(furnace);
+    }
+
+    /**
+     * Creates an inventory to represent the furnace.
+     */
+    public static FurnaceInventory createInventory(Object furnace) throws NoSuchMethodException,
+            IllegalAccessException, InvocationTargetException, InstantiationException {
         //new CraftInventoryFurnace(furnace);
-        return (Inventory) NMSClass.CraftInventoryFurnace.getClazz()
+        return (FurnaceInventory) NMSClass.CraftInventoryFurnace.getClazz()
                 .getDeclaredConstructor(NMSClass.TileEntityFurnace.getClazz()).newInstance(furnace);
     }
 
+    public static void loadFurnaceData(Object furnace, Object furnaceDataTC)
+            throws InvocationTargetException, IllegalAccessException {
+        //furnace.load((NBTTagCompound) furnaceDataTC);
+        if (KnownVersion.v1_16_R1.before()) {
+            NMSMethod.load.call(furnace, furnaceDataTC);
+        } else
+        if (KnownVersion.v1_17_R1.before()) {
+            NMSMethod.load.call(furnace, null, furnaceDataTC);
+        } else {
+            NMSMethod.load.call(furnace, furnaceDataTC); // back to old method, make up your mind
+        }
+    }
+
     @Override
     public void onClose(InventoryCloseEvent e, PotentialBackpackItem backpack, UpdateItemCallback callback) throws Exception {
         // ((CraftInventory)inv).getInventory() == IInventory which is our instance of TileEntityFurnace,
@@ -112,21 +116,24 @@ public class BPFurnace extends BackpackHandler {
         Inventory inv = e.getInventory();
         //TileEntityFurnace furnace = (TileEntityFurnace) ((CraftInventory)inv).getInventory();
         Object craftInventory = NMSClass.CraftInventory.getClazz().cast(inv);
-        Object iInventory = NMSMethod.getInventory.getMethod().invoke(craftInventory);
+        Object iInventory = NMSMethod.getInventory.call(craftInventory);
         Object furnace = NMSClass.TileEntityFurnace.getClazz().cast(iInventory);
 
-        // looks up virtual furnace from table
-        Map.Entry<UUID, VirtualFurnace> vFurnaceEntry = locateVirtualFurnace(furnace);
+        // looks up virtual furnace from table and releases it
+        Map.Entry<UUID, VirtualFurnace> vFurnaceEntry = FurnaceTicker.VIRTUAL_FURNACES.release(furnace);
         if (vFurnaceEntry != null) {
             backpack.setNBT(NBTType.STRING, "furnace_id", vFurnaceEntry.getKey().toString());
-            vFurnaceEntry.getValue().setReleased(true);
+            // tracked from now on, it needs to be identifiable
+            backpack.assignBackpackId();
         }
 
         updateFurnaceDataTo(furnace, backpack);
+        long generation = backpack.nextGeneration();
         ItemStack modifiedItem = backpack.getModifiedItem();
 
         // need to check again for null
         if (vFurnaceEntry != null) {
+            vFurnaceEntry.getValue().setGeneration(generation);
             vFurnaceEntry.getValue().setItemLocation(new ItemStackPointer(
                     modifiedItem,
                     new InventoryLocationPlayer(102, e.getPlayer().getUniqueId())));
@@ -140,20 +147,28 @@ public class BPFurnace extends BackpackHandler {
     public static void updateFurnaceDataTo(Object furnace, NBTMap backpack)
             throws InvocationTargetException, NoSuchMethodException, InstantiationException, IllegalAccessException {
         // update backpack contents with inventory
+        backpack.setAsMap("furnace_data", furnaceDataOf(furnace));
+    }
+
+    /**
+     * @param furnace the NMS furnace
+     * @return what {@link #updateFurnaceDataTo(Object, NBTMap)} writes to the backpack
+     */
+    public static NBTMap furnaceDataOf(Object furnace)
+            throws InvocationTargetException, NoSuchMethodException, InstantiationException, IllegalAccessException {
         NBTMap nbtMap = new NBTMap();
         //furnace.save((NBTTagCompound) nbtMap.getTagCompound());
-        NMSMethod.save.getMethod().invoke(furnace, nbtMap.getTagCompound());
-        backpack.setAsMap("furnace_data", nbtMap);
+        NMSMethod.save.call(furnace, nbtMap.getTagCompound());
+        return nbtMap;
     }
 
     public static Map.Entry<UUID, VirtualFurnace> locateVirtualFurnace(Object furnace) {
-        for (Map.Entry<UUID, VirtualFurnace> entry : BackpackFurnaceTickEvent.VIRTUAL_FURNACES.entrySet()) {
-            if (entry.getValue().getFurnace() == furnace) {
-                return entry;
-            }
-        }
+        UUID id = FurnaceTicker.VIRTUAL_FURNACES.getId(furnace);
+        if (id == null)
+            return null;
 
-        return null;
+        VirtualFurnace virtualFurnace = FurnaceTicker.VIRTUAL_FURNACES.get(id);
+        return virtualFurnace == null ? null : new AbstractMap.SimpleImmutableEntry<>(id, virtualFurnace);
     }
 }
 
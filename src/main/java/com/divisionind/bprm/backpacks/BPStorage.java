@@ -19,8 +19,11 @@
 package com.divisionind.bprm.backpacks;
 
 import com.divisionind.bprm.BackpackHandler;
+import com.divisionind.bprm.BackpackViewers;
+import com.divisionind.bprm.FakeBackpackViewer;
 import com.divisionind.bprm.PotentialBackpackItem;
 import com.divisionind.bprm.UpdateItemCallback;
+import com.divisionind.bprm.storage.AsyncBackpackSaver;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.InventoryCloseEvent;
@@ -48,7 +51,28 @@ public abstract class BPStorage extends BackpackHandler {
     @Override
     public void onClose(InventoryCloseEvent e, PotentialBackpackItem backpack, UpdateItemCallback callback)
             throws Exception {
+        // nothing to save if the backpack was only looked at
+        if (!isModified(e.getInventory()))
+            return;
+
         backpack.setData(e.getInventory(), e.getView().getTitle());
         callback.update(backpack.getModifiedItem());
     }
+
+    /**
+     * Same as {@link #onClose(InventoryCloseEvent, PotentialBackpackItem, UpdateItemCallback)} for a backpack worn by
+     * the player, except that the contents are encoded off the main thread by the {@link AsyncBackpackSaver}.
+     */
+    public void onCloseAsync(InventoryCloseEvent e, PotentialBackpackItem backpack) throws Exception {
+        if (!isModified(e.getInventory()))
+            return;
+
+        AsyncBackpackSaver.save((Player) e.getPlayer(), backpack, e.getInventory().getContents(),
+                e.getView().getTitle());
+    }
+
+    private static boolean isModified(Inventory inv) {
+        FakeBackpackViewer viewer = BackpackViewers.get(inv);
+        return viewer == null || viewer.isModified();
+    }
 }
@@ -21,11 +21,10 @@ package com.divisionind.bprm.commands;
 import com.divisionind.bprm.ACommand;
 import com.divisionind.bprm.BackpackObject;
 import com.divisionind.bprm.PotentialBackpackItem;
-import com.divisionind.bprm.backpacks.BPCombined;
+import com.divisionind.bprm.storage.LazyBackpackData;
 import org.bukkit.Material;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
-import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.util.Vector;
@@ -81,22 +80,22 @@ public class CSplit extends ACommand {
                         }
 
                         // ensure no out of bounds exception
-                        Inventory combinedInv = backpack.getDataAsInventory();
-                        if (slot >= combinedInv.getSize()) {
+                        LazyBackpackData combinedData = backpack.getDataAsLazyInventory();
+                        if (slot >= combinedData.getSize()) {
                             respondf(sender, "&cThe supplied slot number is too large. The max is %s.", slot);
                             return;
                         }
 
                         // check if item specified is null
-                        ItemStack item = combinedInv.getItem(slot);
+                        ItemStack item = combinedData.getItem(slot);
                         if (item == null) {
                             respondf(sender, "&cA backpack was not found in slot %s of the combined backpack.", slot);
                             return;
                         }
 
                         // null item before giving it back to favor the deletion of the item rather than duplication
-                        combinedInv.setItem(slot, null);
-                        backpack.setData(combinedInv, BPCombined.NAME);
+                        combinedData.setItem(slot, null);
+                        backpack.setData(combinedData);
                         p.getInventory().setItemInMainHand(backpack.getModifiedItem());
 
                         safeAddItem(p, item);
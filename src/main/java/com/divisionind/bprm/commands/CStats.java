@@ -0,0 +1,105 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.commands;
+
+import com.divisionind.bprm.ACommand;
+import com.divisionind.bprm.BackpackTypeCache;
+import com.divisionind.bprm.OfflinePlayerService;
+import com.divisionind.bprm.furnace.FurnaceFastForward;
+import com.divisionind.bprm.furnace.FurnacePersistence;
+import com.divisionind.bprm.furnace.FurnacePool;
+import com.divisionind.bprm.furnace.FurnaceTicker;
+import com.divisionind.bprm.scheduler.TickScheduler;
+import com.divisionind.bprm.storage.AsyncBackpackSaver;
+import org.bukkit.command.CommandSender;
+
+public class CStats extends ACommand {
+    @Override
+    public String alias() {
+        return "stats";
+    }
+
+    @Override
+    public String desc() {
+        return "displays internal performance statistics";
+    }
+
+    @Override
+    public String usage() {
+        return "[reset]";
+    }
+
+    @Override
+    public String permission() {
+        return "backpacks.stats";
+    }
+
+    @Override
+    public void execute(CommandSender sender, String label, String[] args) {
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+            BackpackTypeCache.clear();
+            FurnaceTicker.getInstance().resetStats();
+            FurnaceFastForward.resetStats();
+            FurnacePool.resetStats();
+            AsyncBackpackSaver.resetStats();
+            OfflinePlayerService.resetStats();
+            respond(sender, "&eStatistics have been reset.");
+            return;
+        }
+
+        long hits = BackpackTypeCache.getHits();
+        long misses = BackpackTypeCache.getMisses();
+        long total = hits + misses;
+
+        respond(sender, "&e&lStats");
+        respondnf(sender, "&eType cache: &a%s&7/&a%s &eentries", BackpackTypeCache.getOccupied(),
+                BackpackTypeCache.getSize());
+        respondnf(sender, "&eType cache hits: &a%s &emisses: &a%s &e(&a%.1f%%&e)", hits, misses,
+                total == 0 ? 0D : hits * 100D / total);
+        if (AsyncBackpackSaver.isEnabled()) {
+            respondnf(sender, "&eAsync saves: &a%s &esaved, &a%s &esuperseded, &a%s &eflushed early, &a%s &epending",
+                    AsyncBackpackSaver.getSaved(), AsyncBackpackSaver.getSuperseded(), AsyncBackpackSaver.getFlushed(),
+                    AsyncBackpackSaver.getPendingCount());
+        } else respondnf(sender, "&eAsync saves: &cdisabled");
+
+        respondnf(sender, "&eOffline players: &a%s &ecached, &a%s &eloads, &a%s &esaves, &a%s &ebatched",
+                OfflinePlayerService.getCachedCount(), OfflinePlayerService.getLoads(), OfflinePlayerService.getSaves(),
+                OfflinePlayerService.getBatched());
+
+        FurnaceTicker ticker = FurnaceTicker.getInstance();
+        respondnf(sender, "&eTick scheduler: &a%s &e(&a%s &esubscribers)",
+                TickScheduler.isRunning() ? "running" : "idle", TickScheduler.getSubscriberCount());
+        respondnf(sender, "&eFurnace ticking: &a%.3fms &eavg, &a%.3fms &elast, &a%.3fms &emax",
+                ticker.getAverageNanos() / 1000000D, ticker.getLastNanos() / 1000000D, ticker.getMaxNanos() / 1000000D);
+        respondnf(sender, "&eFurnaces: &a%s &eactive, &a%s &eticked (&a%s &einternal ticks), &a%s &edeferred",
+                FurnaceTicker.VIRTUAL_FURNACES.size(), ticker.getLastFurnaces(), ticker.getLastInternalTicks(),
+                ticker.getDeferredCount());
+        respondnf(sender, "&eFailed furnace ticks: &a%s", FurnaceTicker.getTickFailures());
+        respondnf(sender, "&eFurnace ticks skipped by fast-forwarding: &a%s", FurnaceFastForward.getTicksSkipped());
+        respondnf(sender, "&eFurnace pool: &a%s &epooled, &a%s &ereused, &a%s &ecreated, &a%s &ediscarded",
+                FurnacePool.getSize(), FurnacePool.getReused(), FurnacePool.getCreated(), FurnacePool.getDiscarded());
+        respondnf(sender, "&eShards: &a%s &eBudget: &a%s", FurnaceTicker.getShards(),
+                FurnaceTicker.getBudgetNanos() == 0 ? "unlimited" : (FurnaceTicker.getBudgetNanos() / 1000) + "us");
+        if (FurnacePersistence.isEnabled()) {
+            respondnf(sender, "&eFurnace persistence: &a%s &esaved, &a%s &erestored, &a%s &ewaiting, last write &a%sms",
+                    FurnacePersistence.getSavedCount(), FurnacePersistence.getRestoredCount(),
+                    FurnacePersistence.getPendingRestoreCount(), FurnacePersistence.getLastWriteMillis());
+        } else respondnf(sender, "&eFurnace persistence: &cdisabled");
+    }
+}
@@ -27,7 +27,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
-import static com.divisionind.bprm.events.BackpackFurnaceTickEvent.VIRTUAL_FURNACES;
+import static com.divisionind.bprm.furnace.FurnaceTicker.VIRTUAL_FURNACES;
 
 public class CVFurnace extends ACommand {
 
@@ -84,15 +84,12 @@ public class CVFurnace extends ACommand {
         Map<UUID, VirtualFurnace> newMap = new HashMap<>();
 
         int startCmd = (page - 1) * RESULTS_PER_PAGE;
-        for (int i = startCmd; (i < VIRTUAL_FURNACES.size() && (i - startCmd) < RESULTS_PER_PAGE); i++) {
-            int slot = 0;
-
-            for (Map.Entry<UUID, VirtualFurnace> entry : VIRTUAL_FURNACES.entrySet()) {
-                if (slot++ == i) {
-                    newMap.put(entry.getKey(), entry.getValue());
-                    break;
-                }
-            }
+        int slot = 0;
+        for (Map.Entry<UUID, VirtualFurnace> entry : VIRTUAL_FURNACES.entrySet()) {
+            if (slot++ < startCmd) continue;
+            if (newMap.size() == RESULTS_PER_PAGE) break;
+
+            newMap.put(entry.getKey(), entry.getValue());
         }
 
         return newMap;
@@ -20,18 +20,19 @@ package com.divisionind.bprm.events;
 
 import com.divisionind.bprm.ACommand;
 import com.divisionind.bprm.BackpackObject;
+import com.divisionind.bprm.BackpackProbe;
 import com.divisionind.bprm.Backpacks;
 import com.divisionind.bprm.PotentialBackpackItem;
 import com.divisionind.bprm.backpacks.BPCombined;
 import com.divisionind.bprm.nms.NMSItemStack;
 import com.divisionind.bprm.nms.reflect.NBTType;
+import com.divisionind.bprm.storage.LazyBackpackData;
 import org.bukkit.Material;
 import org.bukkit.entity.HumanEntity;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.CraftItemEvent;
 import org.bukkit.event.inventory.PrepareItemCraftEvent;
-import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
@@ -42,26 +43,14 @@ import java.util.List;
 
 public class BackpackCraftEvent implements Listener {
 
-    private static final List<Material> COMBINABLE;
-
-    static {
-        COMBINABLE = new ArrayList<>();
-
-        // scan for available chestplate materials
-        for (Material material : Material.values()) {
-            if (material.name().toLowerCase().contains("chestplate")
-                    && !material.getClass().isAnnotationPresent(Deprecated.class))
-                COMBINABLE.add(material);
-        }
-        COMBINABLE.add(Material.ELYTRA);
-    }
-
     @EventHandler
     public void onCraftEvent(CraftItemEvent e) {
         if (e.isCancelled()) return;
 
         try {
             ItemStack item = e.getCurrentItem();
+            if (!BackpackProbe.canBeBackpack(item)) return;
+
             HumanEntity ent = e.getWhoClicked();
             PotentialBackpackItem backpackItem = new PotentialBackpackItem(item);
 
@@ -90,7 +79,11 @@ public class BackpackCraftEvent implements Listener {
             ItemStack[] inGrid = e.getInventory().getMatrix();
             List<ItemStack> notNull = new ArrayList<>();
             for (ItemStack item : inGrid) {
-                if (item != null) notNull.add(item);
+                if (item != null) {
+                    // every combine needs a backpack and a chestplate/elytra (or another backpack)
+                    if (!BackpackProbe.canBeBackpack(item)) return;
+                    notNull.add(item);
+                }
             }
 
             // if there are only two items in the grid
@@ -120,27 +113,21 @@ public class BackpackCraftEvent implements Listener {
                                return;
                            }
 
-                           // resolve stored backpacks
-                           Inventory combinedInv;
+                           // resolve stored backpacks (without decoding them, we only need to know where they are)
+                           LazyBackpackData combinedData;
                            if (combinedBackpack.hasData()) {
-                               combinedInv = combinedBackpack.getDataAsInventory();
-                           } else combinedInv = BPCombined.createInv();
-
-                           // count how many backpacks are in the combined backpack
-                           int totalBackpacks = 0;
-                           for (ItemStack i : combinedInv.getContents()) {
-                               if (i != null) totalBackpacks++;
-                           }
+                               combinedData = combinedBackpack.getDataAsLazyInventory();
+                           } else combinedData = BPCombined.createData();
 
                            // verify no more than 9 backpacks have been added
-                           if (totalBackpacks >= Backpacks.MAX_COMBINED_BACKPACKS) return;
+                           if (combinedData.getOccupiedCount() >= Backpacks.MAX_COMBINED_BACKPACKS) return;
 
                            // most centered index
-                           int center = getMostCenteredNull(combinedInv.getContents());
+                           int center = getMostCenteredNull(combinedData);
 
                            // set backpack item at that index, return result
-                           combinedInv.setItem(center, normalBackpack.getItem());
-                           combinedBackpack.setData(combinedInv, BPCombined.NAME);
+                           combinedData.setItem(center, normalBackpack.getItem());
+                           combinedBackpack.setData(combinedData);
                            e.getInventory().setResult(combinedBackpack.getModifiedItem());
                            return;
                        }
@@ -153,7 +140,7 @@ public class BackpackCraftEvent implements Listener {
                 if (backpack == null || itemOtherThanBackpack == null) return;
 
                 Material type = itemOtherThanBackpack.getItem().getType();
-                if (COMBINABLE.contains(type)) {
+                if (BackpackProbe.COMBINABLE.contains(type)) {
                     // if backpack has already be combined, stop it from being combined again (also allows backpacks
                     //   to be combined infinitely with leather chestplates)
                     if (!backpack.getItem().getType().equals(Material.LEATHER_CHESTPLATE)) return;
@@ -187,20 +174,20 @@ public class BackpackCraftEvent implements Listener {
         }
     }
 
-    private static int getMostCenteredNull(ItemStack[] item) {
-        int i = item.length / 2;
+    private static int getMostCenteredNull(LazyBackpackData data) {
+        int i = data.getSize() / 2;
         boolean positive = true;
         int magnitude = 1;
 
         for (;;) {
             // if item is not null, return index
-            if (item[i] == null) return i;
+            if (!data.isOccupied(i)) return i;
 
             // adds the value of magnitude in the direction it should be adding
             i = i + (positive ? magnitude : -magnitude);
 
             // check if the new index is out of bounds
-            if (i >= item.length || i < 0) return -1;
+            if (i >= data.getSize() || i < 0) return -1;
 
             // increment magnitude so we progress
             magnitude++;
@@ -18,7 +18,7 @@
 
 package com.divisionind.bprm.events;
 
-import com.divisionind.bprm.PotentialBackpackItem;
+import com.divisionind.bprm.BackpackProbe;
 import org.bukkit.Material;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -31,11 +31,10 @@ public class BackpackDamageEvent implements Listener {
     public void onDamageEvent(PlayerItemDamageEvent e) {
         // dont want to stop damage event on elytra | this would be very op (and they never fully break anyway)
         if (e.getItem().getType().equals(Material.ELYTRA)) return;
+        if (!BackpackProbe.canBeBackpack(e.getItem())) return;
         try {
-            PotentialBackpackItem pbi = new PotentialBackpackItem(e.getItem());
-            if (pbi.isBackpack()) e.setCancelled(true);
-        } catch (InvocationTargetException | IllegalAccessException | InstantiationException
-                | NoSuchMethodException ex) {
+            if (BackpackProbe.isBackpack(e.getItem())) e.setCancelled(true);
+        } catch (InvocationTargetException | IllegalAccessException ex) {
             ex.printStackTrace();
         }
     }
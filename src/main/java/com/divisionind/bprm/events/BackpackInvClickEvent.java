@@ -19,15 +19,18 @@
 package com.divisionind.bprm.events;
 
 import com.divisionind.bprm.BackpackObject;
+import com.divisionind.bprm.BackpackProbe;
 import com.divisionind.bprm.BackpackRecipes;
+import com.divisionind.bprm.BackpackViewers;
 import com.divisionind.bprm.FakeBackpackViewer;
-import com.divisionind.bprm.PotentialBackpackItem;
 import com.divisionind.bprm.backpacks.BPCombined;
-import com.divisionind.bprm.nms.reflect.NMS;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.InventoryAction;
 import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
 import org.bukkit.inventory.ItemStack;
 
 import java.lang.reflect.InvocationTargetException;
@@ -36,7 +39,7 @@ public class BackpackInvClickEvent implements Listener {
     @EventHandler
     public void onInventoryClick(InventoryClickEvent e) {
         // is it a backpack?
-        FakeBackpackViewer viewer = NMS.getBackpackViewer(e.getInventory());
+        FakeBackpackViewer viewer = BackpackViewers.get(e.getInventory());
         if (viewer == null)
             return;
 
@@ -57,24 +60,47 @@ public class BackpackInvClickEvent implements Listener {
 
         // forward clicks to combined backpack click handler
         try {
-            PotentialBackpackItem backpack = new PotentialBackpackItem(
-                    e.getWhoClicked().getInventory().getChestplate());
-            if (backpack.isBackpack()) {
-                BackpackObject bpo = backpack.getTypeObject();
+            int type = BackpackProbe.typeOf(e.getWhoClicked().getInventory().getChestplate());
 
-                // if backpack is combined bp, run click event in handler
-                if (bpo != null && bpo.equals(BackpackObject.COMBINED)) {
-                    ((BPCombined) bpo.getHandler()).onClick(e);
-                }
+            // if backpack is combined bp, run click event in handler
+            if (type == BackpackObject.COMBINED.getTypeId()) {
+                ((BPCombined) BackpackObject.COMBINED.getHandler()).onClick(e);
             }
 
             // backpack nest event
-            PotentialBackpackItem clickedBackpack = new PotentialBackpackItem(clicked);
-            if (clickedBackpack.isBackpack() && !e.getWhoClicked().hasPermission("backpacks.nest"))
+            if (BackpackProbe.isBackpack(clicked) && !e.getWhoClicked().hasPermission("backpacks.nest"))
                 e.setCancelled(true);
-        } catch (InvocationTargetException | IllegalAccessException | InstantiationException
-                | NoSuchMethodException ex) {
+        } catch (InvocationTargetException | IllegalAccessException ex) {
             ex.printStackTrace();
         }
     }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onModifyBackpack(InventoryClickEvent e) {
+        FakeBackpackViewer viewer = BackpackViewers.get(e.getInventory());
+        if (viewer == null || viewer.isModified())
+            return;
+
+        // clicks in the player's own inventory only change the backpack if they move items over to it
+        InventoryAction action = e.getAction();
+        if (e.getRawSlot() < e.getView().getTopInventory().getSize() || action == InventoryAction.MOVE_TO_OTHER_INVENTORY
+                || action == InventoryAction.COLLECT_TO_CURSOR || action == InventoryAction.UNKNOWN) {
+            viewer.setModified(true);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onModifyBackpack(InventoryDragEvent e) {
+        FakeBackpackViewer viewer = BackpackViewers.get(e.getInventory());
+        if (viewer == null || viewer.isModified())
+            return;
+
+        int topSize = e.getView().getTopInventory().getSize();
+        for (int slot : e.getRawSlots()) {
+            if (slot < topSize) {
+                viewer.setModified(true);
+                return;
+            }
+        }
+    }
 }
@@ -39,6 +39,7 @@ public class BackpackLinkEvent implements Listener {
         if (e.getAction() == Action.LEFT_CLICK_BLOCK) {
 
             ItemStack inhand = e.getPlayer().getInventory().getItemInMainHand();
+            if (!BackpackProbe.canBeBackpack(inhand)) return;
 
             try {
                 PotentialBackpackItem backpack = new PotentialBackpackItem(inhand);
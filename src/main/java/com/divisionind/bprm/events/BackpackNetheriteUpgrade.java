@@ -18,19 +18,22 @@
 
 package com.divisionind.bprm.events;
 
+import com.divisionind.bprm.BackpackProbe;
 import com.divisionind.bprm.PotentialBackpackItem;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.PrepareSmithingEvent;
+import org.bukkit.inventory.ItemStack;
 
 import java.lang.reflect.InvocationTargetException;
 
 public class BackpackNetheriteUpgrade implements Listener {
     @EventHandler
     public void onPrepSmithItem(PrepareSmithingEvent e) throws InvocationTargetException, IllegalAccessException, InstantiationException, NoSuchMethodException {
-        PotentialBackpackItem backpackIn = new PotentialBackpackItem(e.getInventory().getItem(0));
+        ItemStack input = e.getInventory().getItem(0);
 
-        if (backpackIn.isBackpack()) {
+        if (BackpackProbe.isBackpack(input)) {
+            PotentialBackpackItem backpackIn = new PotentialBackpackItem(input);
             PotentialBackpackItem backpack = new PotentialBackpackItem(e.getResult());
             backpack.setType(backpackIn.getType());
             backpack.setData(backpackIn.getData());
@@ -19,16 +19,22 @@
 package com.divisionind.bprm.events;
 
 import com.divisionind.bprm.BackpackHandler;
+import com.divisionind.bprm.BackpackProbe;
+import com.divisionind.bprm.BackpackViewers;
 import com.divisionind.bprm.FakeBackpackViewer;
 import com.divisionind.bprm.PotentialBackpackItem;
+import com.divisionind.bprm.backpacks.BPStorage;
 import com.divisionind.bprm.nms.NMSItemStack;
-import com.divisionind.bprm.nms.reflect.NMS;
+import com.divisionind.bprm.storage.AsyncBackpackSaver;
 import org.bukkit.Material;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.Action;
+import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
@@ -42,6 +48,9 @@ public class BackpackOpenCloseEvent implements Listener  {
 
     @EventHandler
     public void onBackpackOpen(PlayerInteractEvent e) throws Exception {
+        // the backpack must be up to date before it can be opened (or swapped out) again
+        AsyncBackpackSaver.flush(e.getPlayer().getUniqueId());
+
         // did right click
         if (e.getAction() == Action.RIGHT_CLICK_AIR || e.getAction() == Action.RIGHT_CLICK_BLOCK) {
             // is item in hand backpack key
@@ -53,7 +62,7 @@ public class BackpackOpenCloseEvent implements Listener  {
             NMSItemStack backpackKey = new NMSItemStack(inhand);
             if (backpackKey.hasNBT("backpack_key")) {
                 ItemStack backpackItem = e.getPlayer().getInventory().getChestplate();
-                if (backpackItem == null)
+                if (!BackpackProbe.canBeBackpack(backpackItem))
                     return;
 
                 PotentialBackpackItem bpi = new PotentialBackpackItem(backpackItem);
@@ -77,17 +86,35 @@ public class BackpackOpenCloseEvent implements Listener  {
     @EventHandler
     public void onBackpackClose(InventoryCloseEvent e) throws Exception {
         // is it a backpack?
-        FakeBackpackViewer viewer = NMS.getBackpackViewer(e.getInventory());
+        FakeBackpackViewer viewer = BackpackViewers.get(e.getInventory());
         if (viewer == null)
             return;
 
-        ItemStack bp = e.getPlayer().getInventory().getChestplate();
-        PotentialBackpackItem bpi = new PotentialBackpackItem(bp);
+        try {
+            ItemStack bp = e.getPlayer().getInventory().getChestplate();
+            PotentialBackpackItem bpi = BackpackProbe.canBeBackpack(bp) ? new PotentialBackpackItem(bp) : null;
 
-        if (bpi.isBackpack()) {
-            bpi.getHandler().onClose(e, bpi,
-                    newItem -> e.getPlayer().getInventory().setChestplate(newItem));
+            if (bpi != null && bpi.isBackpack()) {
+                BackpackHandler handler = bpi.getHandler();
+                if (handler instanceof BPStorage && AsyncBackpackSaver.isEnabled()) {
+                    ((BPStorage) handler).onCloseAsync(e, bpi);
+                } else handler.onClose(e, bpi, newItem -> e.getPlayer().getInventory().setChestplate(newItem));
+            }
+        } finally {
+            // the handlers above still need to know it was a backpack
+            BackpackViewers.remove(e.getInventory());
+            transactions.remove(e.getPlayer().getUniqueId());
         }
-        transactions.remove(e.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onClickBeforeSave(InventoryClickEvent e) {
+        // the backpack could be moved by this click, apply its pending save first
+        AsyncBackpackSaver.flush(e.getWhoClicked().getUniqueId());
+    }
+
+    @EventHandler
+    public void onQuitBeforeSave(PlayerQuitEvent e) {
+        AsyncBackpackSaver.flush(e.getPlayer().getUniqueId());
     }
 }
@@ -19,21 +19,26 @@
 package com.divisionind.bprm.events;
 
 import com.divisionind.bprm.BackpackObject;
-import com.divisionind.bprm.PotentialBackpackItem;
+import com.divisionind.bprm.BackpackProbe;
 import com.divisionind.bprm.VirtualFurnace;
+import com.divisionind.bprm.furnace.FurnaceTicker;
+import com.divisionind.bprm.location.GroundItemIndex;
 import com.divisionind.bprm.location.ItemStackPointer;
 import com.divisionind.bprm.location.SurfaceLocation;
 import com.divisionind.bprm.location.itemlocs.InventoryLocationBlock;
 import com.divisionind.bprm.location.itemlocs.InventoryLocationEnderChest;
 import com.divisionind.bprm.location.itemlocs.InventoryLocationPlayer;
 import com.divisionind.bprm.location.itemlocs.LocationGround;
+import com.divisionind.bprm.nms.NBTMap;
 import com.divisionind.bprm.nms.reflect.NBTType;
-import org.bukkit.World;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.HumanEntity;
+import org.bukkit.entity.Item;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityPickupItemEvent;
+import org.bukkit.event.entity.ItemDespawnEvent;
+import org.bukkit.event.entity.ItemMergeEvent;
 import org.bukkit.event.entity.ItemSpawnEvent;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryType;
@@ -75,20 +80,22 @@ public class BackpackTrackEvents implements Listener {
         }
 
         private void itemMoveHandler(Inventory inv, int slot, ItemStack item, HumanEntity entity) {
+            if (!BackpackProbe.canBeBackpack(item)) return;
+
             UUID playerId = entity.getUniqueId();
             switch (inv.getType()) {
                 case PLAYER:
-                    checkAndUpdate(item, () -> new InventoryLocationPlayer(slot, playerId));
+                    checkAndUpdate(item, furnaceId -> new InventoryLocationPlayer(slot, playerId));
                     break;
                 case ENDER_CHEST:
-                    checkAndUpdate(item, () -> new InventoryLocationEnderChest(slot, playerId));
+                    checkAndUpdate(item, furnaceId -> new InventoryLocationEnderChest(slot, playerId));
                     break;
                 default: // set to default to support any future inventory containing blocks
                     InventoryHolder holder = inv.getHolder();
                     if (holder instanceof org.bukkit.inventory.BlockInventoryHolder) {
                         org.bukkit.inventory.BlockInventoryHolder blockHolder =
                                 (org.bukkit.inventory.BlockInventoryHolder) holder;
-                        checkAndUpdate(item, () -> new InventoryLocationBlock(slot, blockHolder));
+                        checkAndUpdate(item, furnaceId -> new InventoryLocationBlock(slot, blockHolder));
                     }
                     break;
             }
@@ -102,10 +109,16 @@ public class BackpackTrackEvents implements Listener {
 
     @EventHandler
     public void onItemPickup(EntityPickupItemEvent e) {
-        if (!e.isCancelled() && e.getEntityType().equals(EntityType.PLAYER)) {
+        if (e.isCancelled()) return;
+        GroundItemIndex.removeEntity(e.getItem().getUniqueId());
+
+        if (e.getEntityType().equals(EntityType.PLAYER)) {
             // if the item slot gets added to this event, a great optimization could be made
+            ItemStack item = e.getItem().getItemStack();
+            if (!BackpackProbe.canBeBackpack(item)) return;
+
             final UUID playerId = e.getEntity().getUniqueId();
-            checkAndUpdate(e.getItem().getItemStack(), () -> new InventoryLocationPlayer(0, playerId));
+            checkAndUpdate(item, furnaceId -> new InventoryLocationPlayer(0, playerId));
         }
     }
 
@@ -113,24 +126,36 @@ public class BackpackTrackEvents implements Listener {
     public void onItemSpawn(ItemSpawnEvent e) {
         // should encompass chest breaking and player item dropping
         if (!e.isCancelled()) {
-            final World lastWorld = e.getEntity().getWorld();
-            checkAndUpdate(e.getEntity().getItemStack(), () -> new LocationGround(lastWorld));
+            ItemStack item = e.getEntity().getItemStack();
+            if (!BackpackProbe.canBeBackpack(item)) return;
+
+            final Item entity = e.getEntity();
+            checkAndUpdate(item, furnaceId -> {
+                GroundItemIndex.put(furnaceId, entity.getUniqueId());
+                return new LocationGround(entity, furnaceId);
+            });
         }
     }
 
+    @EventHandler
+    public void onItemDespawn(ItemDespawnEvent e) {
+        if (!e.isCancelled()) GroundItemIndex.removeEntity(e.getEntity().getUniqueId());
+    }
+
+    @EventHandler
+    public void onItemMerge(ItemMergeEvent e) {
+        if (!e.isCancelled()) GroundItemIndex.moveEntity(e.getEntity().getUniqueId(), e.getTarget().getUniqueId());
+    }
 
-    private static VirtualFurnace getActiveVFurnace(ItemStack item)
-            throws InvocationTargetException, IllegalAccessException, NoSuchMethodException, InstantiationException {
 
-        // is it a furnace backpack?
-        PotentialBackpackItem potentialBackpack = new PotentialBackpackItem(item);
-        if (!potentialBackpack.isBackpack()) return null;
-        if (potentialBackpack.getType() != BackpackObject.FURNACE.getTypeId()) return null;
+    private static UUID getFurnaceId(ItemStack item) throws InvocationTargetException, IllegalAccessException {
+        // is it a furnace backpack? (read-only, we only need to look at the tag)
+        if (BackpackProbe.typeOf(item) != BackpackObject.FURNACE.getTypeId()) return null;
 
         // it is a furnace backpack, so
-        if (potentialBackpack.hasNBT("furnace_id")) {
-            UUID furnaceId = UUID.fromString((String) potentialBackpack.getNBT(NBTType.STRING, "furnace_id"));
-            return BackpackFurnaceTickEvent.VIRTUAL_FURNACES.get(furnaceId);
+        NBTMap tag = BackpackProbe.readTag(item);
+        if (tag != null && tag.hasNBT("furnace_id")) {
+            return UUID.fromString((String) tag.getNBT(NBTType.STRING, "furnace_id"));
         }
 
         return null;
@@ -138,19 +163,19 @@ public class BackpackTrackEvents implements Listener {
 
     private static void checkAndUpdate(ItemStack item, UpdateAction action) {
         try {
-            VirtualFurnace vfurnace = getActiveVFurnace(item);
+            UUID furnaceId = getFurnaceId(item);
+            VirtualFurnace vfurnace = furnaceId == null ? null : FurnaceTicker.VIRTUAL_FURNACES.get(furnaceId);
             if (vfurnace != null) {
                 ItemStackPointer itemLocation = vfurnace.getItemLocation();
 
                 if (itemLocation != null) {
-                    itemLocation.setSurfaceLocation(action.acquire());
+                    itemLocation.setSurfaceLocation(action.acquire(furnaceId));
                 }
             }
-        } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException
-                | InstantiationException e) { }
+        } catch (InvocationTargetException | IllegalAccessException e) { }
     }
 
     private interface UpdateAction {
-        SurfaceLocation acquire();
+        SurfaceLocation acquire(UUID furnaceId);
     }
 }
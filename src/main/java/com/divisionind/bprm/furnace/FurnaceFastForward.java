@@ -0,0 +1,279 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.furnace;
+
+import com.divisionind.bprm.VirtualFurnace;
+import com.divisionind.bprm.backpacks.BPFurnace;
+import com.divisionind.bprm.nms.KnownVersion;
+import com.divisionind.bprm.nms.NBTMap;
+import com.divisionind.bprm.nms.reflect.NBTType;
+import com.divisionind.bprm.nms.reflect.NMSMethod;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.inventory.FurnaceInventory;
+import org.bukkit.inventory.FurnaceRecipe;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.Recipe;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Iterator;
+
+/**
+ * Puts released furnaces to sleep instead of ticking them. When a furnace is released, the tick it will run out of
+ * things to do at is calculated with a {@link FurnaceState}. It is not ticked until then (or until it is opened again),
+ * at which point it is advanced to the current tick in one step.
+ *
+ * Only supported in 1.14+. Items smelted while asleep are added to the recipes the furnace has used, like they would
+ * have been when ticking it, so the experience for them is still handed out when the result is taken.
+ */
+public class FurnaceFastForward {
+
+    private static final String BURN_TIME = "BurnTime";
+    private static final String COOK_TIME = "CookTime";
+    private static final String COOK_TIME_TOTAL = "CookTimeTotal";
+    // 1.16+, recipe key -> times used
+    private static final String RECIPES_USED = "RecipesUsed";
+    // 1.14 and 1.15, a list of recipe keys and the times they were used
+    private static final String RECIPES_USED_SIZE = "RecipesUsedSize";
+    private static final String RECIPE_LOCATION = "RecipeLocation";
+    private static final String RECIPE_AMOUNT = "RecipeAmount";
+
+    private static long ticksSkipped;
+
+    public static boolean isSupported() {
+        return !KnownVersion.v1_14_R1.before() && NMSMethod.fuelTime.getMethod() != null;
+    }
+
+    /**
+     * Puts a released furnace to sleep until it is done. If this fails, the furnace is marked as
+     * {@link VirtualFurnace#SLEEPLESS} and should be ticked normally.
+     *
+     * @param furnace the furnace, up to date with its last tick
+     * @return true if the furnace is now sleeping
+     */
+    public static boolean sleep(VirtualFurnace furnace) {
+        if (furnace.isSleeping())
+            return true;
+
+        if (furnace.getWakeTick() == VirtualFurnace.SLEEPLESS)
+            return false;
+
+        Snapshot snapshot = isSupported() ? Snapshot.read(furnace.getFurnace()) : null;
+        if (snapshot == null) {
+            furnace.setWakeTick(VirtualFurnace.SLEEPLESS);
+            return false;
+        }
+
+        furnace.setWakeTick(furnace.getLastTick() + snapshot.state.ticksUntilIdle());
+        return true;
+    }
+
+    /**
+     * Wakes a sleeping furnace and advances it to the given tick. If the furnace is not sleeping, this only clears
+     * {@link VirtualFurnace#SLEEPLESS} so it can be tried again the next time the furnace is released.
+     *
+     * @param furnace the furnace
+     * @param tick tick to advance the furnace to
+     */
+    public static void wake(VirtualFurnace furnace, long tick) {
+        if (!furnace.isSleeping()) {
+            furnace.setWakeTick(VirtualFurnace.AWAKE);
+            return;
+        }
+
+        furnace.setWakeTick(VirtualFurnace.AWAKE);
+        long ticks = tick - furnace.getLastTick();
+        furnace.setLastTick(tick);
+        advance(furnace.getFurnace(), ticks);
+    }
+
+    /**
+     * Advances a furnace tile entity by the given number of ticks in one step.
+     *
+     * @param furnace the furnace tile entity
+     * @param ticks number of ticks to advance
+     * @return true if the furnace was advanced
+     */
+    public static boolean advance(Object furnace, long ticks) {
+        if (ticks <= 0)
+            return true;
+
+        Snapshot snapshot = isSupported() ? Snapshot.read(furnace) : null;
+        if (snapshot == null)
+            return false;
+
+        snapshot.state.advance(ticks);
+        snapshot.write();
+        ticksSkipped += ticks;
+        return true;
+    }
+
+    /**
+     * @return number of furnace ticks that were not needed because of fast-forwarding
+     */
+    public static long getTicksSkipped() {
+        return ticksSkipped;
+    }
+
+    public static void resetStats() {
+        ticksSkipped = 0;
+    }
+
+    private static FurnaceRecipe findRecipe(ItemStack input) {
+        Iterator<Recipe> recipes = Bukkit.recipeIterator();
+        while (recipes.hasNext()) {
+            Recipe recipe = recipes.next();
+            if (recipe instanceof FurnaceRecipe && ((FurnaceRecipe) recipe).getInputChoice().test(input))
+                return (FurnaceRecipe) recipe;
+        }
+
+        return null;
+    }
+
+    private static boolean isEmpty(ItemStack item) {
+        return item == null || item.getType() == Material.AIR || item.getAmount() == 0;
+    }
+
+    private static ItemStack withAmount(ItemStack item, int amount) {
+        if (amount <= 0) return null;
+        ItemStack copy = item.clone();
+        copy.setAmount(amount);
+        return copy;
+    }
+
+    /**
+     * State of a furnace read from its NBT and inventory.
+     */
+    private static class Snapshot {
+        private final Object furnace;
+        private final NBTMap tag;
+        private final FurnaceInventory inventory;
+        private final ItemStack smelting;
+        private final ItemStack fuel;
+        private final ItemStack result;
+        private final ItemStack recipeResult;
+        private final String recipeKey;
+        private final FurnaceState state;
+
+        private Snapshot(Object furnace, NBTMap tag, FurnaceInventory inventory, ItemStack recipeResult,
+                         String recipeKey, FurnaceState state) {
+            this.furnace = furnace;
+            this.tag = tag;
+            this.inventory = inventory;
+            this.smelting = inventory.getSmelting();
+            this.fuel = inventory.getFuel();
+            this.result = inventory.getResult();
+            this.recipeResult = recipeResult;
+            this.recipeKey = recipeKey;
+            this.state = state;
+        }
+
+        /**
+         * @return the snapshot or null if the furnace can not be simulated
+         */
+        private static Snapshot read(Object furnace) {
+            try {
+                NBTMap tag = new NBTMap();
+                NMSMethod.save.call(furnace, tag.getTagCompound());
+                if (!tag.hasNBT(BURN_TIME) || !tag.hasNBT(COOK_TIME) || !tag.hasNBT(COOK_TIME_TOTAL))
+                    return null;
+
+                FurnaceInventory inventory = BPFurnace.createInventory(furnace);
+                ItemStack smelting = inventory.getSmelting();
+                ItemStack fuel = inventory.getFuel();
+                ItemStack result = inventory.getResult();
+
+                FurnaceRecipe recipe = isEmpty(smelting) ? null : findRecipe(smelting);
+                ItemStack recipeResult = recipe == null ? null : recipe.getResult();
+                int fuelTime = isEmpty(fuel) ? 0 : (int) NMSMethod.fuelTime.call(furnace, NMSMethod.asNMSCopy.call(fuel));
+
+                boolean outputMatches = isEmpty(result) ||
+                        (recipeResult != null && result.getType() == recipeResult.getType());
+                int outputLimit = Math.min(64, !isEmpty(result) ? result.getMaxStackSize() :
+                        recipeResult == null ? 64 : recipeResult.getMaxStackSize());
+
+                FurnaceState state = new FurnaceState(
+                        tag.getShort(BURN_TIME),
+                        tag.getShort(COOK_TIME),
+                        tag.getShort(COOK_TIME_TOTAL),
+                        isEmpty(smelting) ? 0 : smelting.getAmount(),
+                        isEmpty(fuel) ? 0 : fuel.getAmount(),
+                        isEmpty(result) ? 0 : result.getAmount(),
+                        fuelTime,
+                        recipe == null ? 0 : recipe.getCookingTime(),
+                        recipeResult == null ? 1 : recipeResult.getAmount(),
+                        outputLimit,
+                        outputMatches,
+                        !isEmpty(fuel) && fuel.getType() == Material.LAVA_BUCKET);
+
+                return new Snapshot(furnace, tag, inventory, recipeResult,
+                        recipe == null ? null : recipe.getKey().toString(), state);
+            } catch (InvocationTargetException | IllegalAccessException | InstantiationException
+                    | NoSuchMethodException | RuntimeException e) {
+                // anything unexpected, just tick it normally
+                return null;
+            }
+        }
+
+        private void write() {
+            try {
+                tag.setShort(BURN_TIME, (short) state.getBurnTime());
+                tag.setShort(COOK_TIME, (short) state.getCookTime());
+                tag.setShort(COOK_TIME_TOTAL, (short) state.getCookTimeTotal());
+                if (state.getSmelted() > 0 && recipeKey != null) recordRecipe();
+                BPFurnace.loadFurnaceData(furnace, tag.getTagCompound());
+
+                // loading restores the old items, so update them after
+                if (state.getOutput() > 0)
+                    inventory.setResult(withAmount(isEmpty(result) ? recipeResult : result, state.getOutput()));
+                inventory.setFuel(state.isFuelReplaced() ? new ItemStack(Material.BUCKET) :
+                        isEmpty(fuel) ? null : withAmount(fuel, state.getFuel()));
+                inventory.setSmelting(isEmpty(smelting) ? null : withAmount(smelting, state.getInput()));
+            } catch (InvocationTargetException | IllegalAccessException | InstantiationException
+                    | NoSuchMethodException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * Adds the items smelted by the simulation to the recipes used by the furnace.
+         */
+        private void recordRecipe() throws InvocationTargetException, IllegalAccessException, InstantiationException,
+                NoSuchMethodException {
+            if (!KnownVersion.v1_16_R1.before()) {
+                NBTMap used = tag.hasNBT(RECIPES_USED) ? tag.getAsMap(RECIPES_USED) : new NBTMap();
+                used.setInt(recipeKey, used.getInt(recipeKey) + state.getSmelted());
+                tag.setAsMap(RECIPES_USED, used);
+                return;
+            }
+
+            short size = tag.getShort(RECIPES_USED_SIZE);
+            for (short i = 0; i < size; i++) {
+                if (recipeKey.equals(tag.getNBT(NBTType.STRING, RECIPE_LOCATION + i))) {
+                    tag.setInt(RECIPE_AMOUNT + i, tag.getInt(RECIPE_AMOUNT + i) + state.getSmelted());
+                    return;
+                }
+            }
+
+            tag.setNBT(NBTType.STRING, RECIPE_LOCATION + size, recipeKey);
+            tag.setInt(RECIPE_AMOUNT + size, state.getSmelted());
+            tag.setShort(RECIPES_USED_SIZE, (short) (size + 1));
+        }
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.furnace;
+
+import com.divisionind.bprm.VirtualFurnace;
+import com.divisionind.bprm.location.ItemStackPointer;
+import com.divisionind.bprm.location.SurfaceLocation;
+import com.divisionind.bprm.location.SurfaceLocations;
+import com.divisionind.bprm.nms.NBTMap;
+import com.divisionind.bprm.nms.NMSItemStack;
+import com.divisionind.bprm.nms.reflect.NMSMethod;
+import com.divisionind.bprm.scheduler.TickScheduler;
+import com.divisionind.bprm.scheduler.TickSubscriber;
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Saves virtual furnaces to disk so they keep smelting across restarts.
+ *
+ * Every interval, each furnace is snapshotted to NBT on the main thread, a few per tick so that large numbers of
+ * furnaces do not cause a lag spike. Once all of them are done, the snapshots are written to disk asynchronously.
+ * On shutdown, everything is written synchronously. When the plugin is enabled again, the furnaces are restored a few
+ * per tick and fast-forwarded by the number of ticks they had left over when they were saved. A furnace that is opened
+ * before its turn is restored right away.
+ *
+ * Only supported in 1.13+. Items smelted after the last snapshot are lost if the server crashes. A furnace restored
+ * from before a crash may already have been written back to its backpack since, the generation of the backpack it was
+ * saved with keeps it from being written back again (see {@link com.divisionind.bprm.PotentialBackpackItem#getGeneration()}).
+ */
+public class FurnacePersistence implements TickSubscriber {
+
+    private static final FurnacePersistence INSTANCE = new FurnacePersistence();
+
+    private static final String FILE_NAME = "furnaces.dat";
+    private static final int FILE_VERSION = 1;
+
+    // maximum time spent snapshotting or restoring furnaces per tick
+    private static final long BATCH_NANOS = 2000000L;
+
+    private static final String ID_MOST = "id_most";
+    private static final String ID_LEAST = "id_least";
+    private static final String PENDING = "pending";
+    private static final String GENERATION = "generation";
+    private static final String FURNACE = "furnace";
+    private static final String ITEM = "item";
+    private static final String LOCATION = "location";
+
+    private static boolean enabled = true;
+    private static long intervalTicks = 6000L;
+
+    private final Map<UUID, byte[]> records = new ConcurrentHashMap<>();
+    private final Queue<UUID> toSnapshot = new ArrayDeque<>();
+    private final Map<UUID, byte[]> toRestore = new LinkedHashMap<>();
+    private final Object fileLock = new Object();
+
+    private Plugin plugin;
+    private File file;
+    private BukkitTask snapshotTask;
+    private boolean snapshotting;
+    // the asynchronous writes may finish out of order, an older snapshot must never replace a newer one
+    private long snapshotSequence;
+    private long writtenSequence; // guarded by fileLock
+
+    // statistics
+    private long lastWriteMillis;
+    private int restored;
+
+    public static boolean isSupported() {
+        return NMSMethod.writeCompound.getMethod() != null && NMSMethod.readCompound.getMethod() != null;
+    }
+
+    /**
+     * @param enabled whether furnaces should be saved at all
+     * @param intervalSeconds time between snapshots in seconds
+     */
+    public static void configure(boolean enabled, int intervalSeconds) {
+        FurnacePersistence.enabled = enabled;
+        FurnacePersistence.intervalTicks = Math.max(1, intervalSeconds) * 20L;
+    }
+
+    /**
+     * Reads the saved furnaces and starts restoring them, then starts taking snapshots periodically.
+     */
+    public static void start(Plugin plugin) {
+        INSTANCE.plugin = plugin;
+        INSTANCE.file = new File(plugin.getDataFolder(), FILE_NAME);
+        if (!enabled || !isSupported())
+            return;
+
+        // read right away, a backpack opened from now on must be able to find its furnace (see restoreNow)
+        INSTANCE.toRestore.putAll(INSTANCE.read());
+        if (!INSTANCE.toRestore.isEmpty()) TickScheduler.subscribe(INSTANCE);
+
+        INSTANCE.snapshotTask = Bukkit.getScheduler().runTaskTimer(plugin, INSTANCE::beginSnapshot,
+                intervalTicks, intervalTicks);
+    }
+
+    /**
+     * Snapshots every furnace and writes them synchronously. Must be called before the furnaces are cleared.
+     */
+    public static void stop() {
+        if (INSTANCE.snapshotTask != null) {
+            INSTANCE.snapshotTask.cancel();
+            INSTANCE.snapshotTask = null;
+        }
+
+        TickScheduler.unsubscribe(INSTANCE);
+        if (INSTANCE.file == null || !enabled || !isSupported())
+            return;
+
+        Set<UUID> ids = INSTANCE.currentIds();
+        INSTANCE.toSnapshot.clear();
+        INSTANCE.toSnapshot.addAll(ids);
+        INSTANCE.snapshotBatch(TickScheduler.getCurrentTick(), Long.MAX_VALUE);
+        INSTANCE.snapshotting = false;
+        INSTANCE.records.keySet().retainAll(ids);
+
+        // furnaces that were never restored (e.g. the server stopped right after starting) are kept as is
+        Map<UUID, byte[]> data = new HashMap<>(INSTANCE.records);
+        data.putAll(INSTANCE.toRestore);
+        INSTANCE.toRestore.clear();
+        INSTANCE.write(data, ++INSTANCE.snapshotSequence);
+        INSTANCE.records.clear();
+    }
+
+    /**
+     * Restores a furnace now if it has not been restored yet. Call this before looking up a furnace by its id.
+     */
+    public static void restoreNow(UUID id) {
+        byte[] data = INSTANCE.toRestore.remove(id);
+        if (data != null) INSTANCE.restore(data);
+    }
+
+    /**
+     * Drops the saved state of a furnace that no longer exists.
+     */
+    public static void forget(UUID id) {
+        INSTANCE.records.remove(id);
+    }
+
+    @Override
+    public void onTick(long tick) {
+        long deadline = System.nanoTime() + BATCH_NANOS;
+
+        Iterator<byte[]> pending = toRestore.values().iterator();
+        while (pending.hasNext() && System.nanoTime() < deadline) {
+            byte[] data = pending.next();
+            pending.remove();
+            restore(data);
+        }
+
+        if (snapshotting && snapshotBatch(tick, deadline)) {
+            snapshotting = false;
+            records.keySet().retainAll(currentIds());
+            Map<UUID, byte[]> data = new HashMap<>(records);
+            long sequence = ++snapshotSequence;
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> write(data, sequence));
+        }
+
+        if (toRestore.isEmpty() && !snapshotting) TickScheduler.unsubscribe(this);
+    }
+
+    private void beginSnapshot() {
+        if (snapshotting)
+            return;
+
+        toSnapshot.addAll(currentIds());
+        snapshotting = true;
+        TickScheduler.subscribe(this);
+    }
+
+    private Set<UUID> currentIds() {
+        Set<UUID> ids = new HashSet<>();
+        for (Map.Entry<UUID, VirtualFurnace> entry : FurnaceTicker.VIRTUAL_FURNACES.entrySet())
+            ids.add(entry.getKey());
+        return ids;
+    }
+
+    /**
+     * @return true if all queued furnaces have been snapshotted
+     */
+    private boolean snapshotBatch(long tick, long deadline) {
+        while (!toSnapshot.isEmpty()) {
+            if (System.nanoTime() >= deadline)
+                return false;
+
+            UUID id = toSnapshot.poll();
+            VirtualFurnace furnace = FurnaceTicker.VIRTUAL_FURNACES.get(id);
+            if (furnace == null) {
+                records.remove(id);
+                continue;
+            }
+
+            try {
+                records.put(id, encode(id, furnace, tick));
+            } catch (InvocationTargetException | IllegalAccessException | InstantiationException
+                    | NoSuchMethodException | IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to save virtual furnace " + id, e);
+            }
+        }
+
+        return true;
+    }
+
+    private static byte[] encode(UUID id, VirtualFurnace furnace, long tick) throws InvocationTargetException,
+            IllegalAccessException, InstantiationException, NoSuchMethodException, IOException {
+        NBTMap record = new NBTMap();
+        record.setLong(ID_MOST, id.getMostSignificantBits());
+        record.setLong(ID_LEAST, id.getLeastSignificantBits());
+        // sleeping furnaces are only up to date with their last tick
+        record.setLong(PENDING, Math.max(0, tick - furnace.getLastTick()));
+        record.setLong(GENERATION, furnace.getGeneration());
+
+        NBTMap furnaceData = new NBTMap();
+        NMSMethod.save.call(furnace.getFurnace(), furnaceData.getTagCompound());
+        record.setAsMap(FURNACE, furnaceData);
+
+        ItemStackPointer pointer = furnace.getItemLocation();
+        if (pointer != null && pointer.getSurfaceItem() != null) {
+            record.setAsMap(ITEM, NMSItemStack.saveToNBT(pointer.getSurfaceItem()));
+            if (pointer.getSurfaceLocation() != null) {
+                NBTMap location = new NBTMap();
+                pointer.getSurfaceLocation().save(location);
+                record.setAsMap(LOCATION, location);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            record.write(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void restore(byte[] data) {
+        try {
+            NBTMap record = NBTMap.read(new DataInputStream(new ByteArrayInputStream(data)));
+            UUID id = new UUID(record.getLong(ID_MOST), record.getLong(ID_LEAST));
+            if (FurnaceTicker.VIRTUAL_FURNACES.get(id) != null)
+                return;
+
+            Object tile = FurnacePool.acquire(record.getAsMap(FURNACE).getTagCompound());
+            // pre 1.14 furnaces can not be fast-forwarded, they just continue from where they were saved
+            FurnaceFastForward.advance(tile, record.getLong(PENDING));
+
+            VirtualFurnace furnace = new VirtualFurnace(tile);
+            furnace.setReleased(true);
+            furnace.setGeneration(record.getLong(GENERATION));
+            if (record.hasNBT(ITEM)) {
+                ItemStack item = NMSItemStack.loadFromNBT(record.getAsMap(ITEM));
+                SurfaceLocation location = record.hasNBT(LOCATION) ?
+                        SurfaceLocations.load(record.getAsMap(LOCATION)) : null;
+                furnace.setItemLocation(new ItemStackPointer(item, location));
+            }
+
+            FurnaceTicker.track(id, furnace);
+            restored++;
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to restore a virtual furnace", e);
+        }
+    }
+
+    private Map<UUID, byte[]> read() {
+        Map<UUID, byte[]> saved = new LinkedHashMap<>();
+        synchronized (fileLock) {
+            if (!file.exists())
+                return saved;
+
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                int version = in.readInt();
+                if (version != FILE_VERSION) {
+                    plugin.getLogger().warning("Unknown virtual furnace file version " + version + ", ignoring it.");
+                    return saved;
+                }
+
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    UUID id = new UUID(in.readLong(), in.readLong());
+                    byte[] data = new byte[in.readInt()];
+                    in.readFully(data);
+                    saved.put(id, data);
+                }
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to read saved virtual furnaces", e);
+            }
+        }
+
+        return saved;
+    }
+
+    private void write(Map<UUID, byte[]> data, long sequence) {
+        synchronized (fileLock) {
+            if (sequence <= writtenSequence)
+                return;
+            writtenSequence = sequence;
+
+            long start = System.currentTimeMillis();
+            File temp = new File(file.getParentFile(), FILE_NAME + ".tmp");
+            try {
+                file.getParentFile().mkdirs();
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                    out.writeInt(FILE_VERSION);
+                    out.writeInt(data.size());
+                    for (Map.Entry<UUID, byte[]> record : data.entrySet()) {
+                        out.writeLong(record.getKey().getMostSignificantBits());
+                        out.writeLong(record.getKey().getLeastSignificantBits());
+                        out.writeInt(record.getValue().length);
+                        out.write(record.getValue());
+                    }
+                }
+
+                // replace the old file only once the new one is complete
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                lastWriteMillis = System.currentTimeMillis() - start;
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to save virtual furnaces", e);
+            }
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled && isSupported();
+    }
+
+    public static int getSavedCount() {
+        return INSTANCE.records.size();
+    }
+
+    public static int getRestoredCount() {
+        return INSTANCE.restored;
+    }
+
+    public static int getPendingRestoreCount() {
+        return INSTANCE.toRestore.size();
+    }
+
+    public static long getLastWriteMillis() {
+        return INSTANCE.lastWriteMillis;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.furnace;
+
+import com.divisionind.bprm.backpacks.BPFurnace;
+import com.divisionind.bprm.nms.KnownVersion;
+import com.divisionind.bprm.nms.NBTMap;
+import com.divisionind.bprm.nms.reflect.NMS;
+import com.divisionind.bprm.nms.reflect.NMSClass;
+import com.divisionind.bprm.nms.reflect.NMSMethod;
+import org.bukkit.Bukkit;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Creates the NMS furnace tile entities used by virtual furnaces and keeps the ones no longer in use around to be
+ * reused. A tile entity is only returned to the pool once its virtual furnace is done and has been removed, so
+ * nothing else can be using it.
+ *
+ * Loading does not reset everything in a furnace, e.g. the recipes used (smelting XP) are added to and a custom name
+ * is kept if the loaded data has none. So only tile entities that save exactly like a new one are pooled, anything
+ * left in them would be handed to the next player.
+ */
+public class FurnacePool {
+
+    private static final int MAX_SIZE = 64;
+
+    // cook time total is always replaced by loading, it stays at the time of the last recipe after smelting
+    private static final String RESET_BY_LOAD = "CookTimeTotal";
+
+    private static final Deque<Object> pool = new ArrayDeque<>();
+    private static Object worldServer;
+    private static Object pristine;
+
+    private static long created;
+    private static long reused;
+    private static long discarded;
+
+    /**
+     * Gets a furnace tile entity, either from the pool or a new one.
+     *
+     * @param furnaceData NBTTagCompound to load the furnace from or null for an empty furnace
+     * @return the furnace tile entity
+     */
+    public static Object acquire(Object furnaceData) throws NoSuchMethodException, IllegalAccessException,
+            InvocationTargetException, InstantiationException {
+        Object furnace = pool.poll();
+
+        if (furnace == null) {
+            furnace = create();
+            created++;
+            if (furnaceData != null) BPFurnace.loadFurnaceData(furnace, furnaceData);
+        } else {
+            // only drained furnaces are pooled, an empty compound resets the rest of them
+            BPFurnace.loadFurnaceData(furnace, furnaceData != null ? furnaceData :
+                    NMSClass.NBTTagCompound.getClazz().getDeclaredConstructor().newInstance());
+            reused++;
+        }
+
+        return furnace;
+    }
+
+    /**
+     * Returns a furnace tile entity to the pool. It must not be used by anything after this. Furnaces that are not
+     * fully drained (see {@link #isDrained(Object)}) are dropped instead.
+     */
+    public static void release(Object furnace) {
+        if (pool.size() >= MAX_SIZE)
+            return;
+
+        try {
+            if (isDrained(furnace)) {
+                pool.push(furnace);
+                return;
+            }
+        } catch (InvocationTargetException | IllegalAccessException | InstantiationException
+                | NoSuchMethodException e) {
+            // can not tell what is left in it, so it is not reused
+        }
+
+        discarded++;
+    }
+
+    /**
+     * @param furnace furnace tile entity
+     * @return true if the furnace saves the same as a new one (ignoring what loading always replaces), nothing in it
+     *         can then carry over to whoever gets it next
+     */
+    static boolean isDrained(Object furnace) throws InvocationTargetException, IllegalAccessException,
+            InstantiationException, NoSuchMethodException {
+        if (pristine == null) {
+            // the state of a new furnace, created once
+            pristine = save(create());
+        }
+
+        return save(furnace).equals(pristine);
+    }
+
+    private static Object save(Object furnace) throws InvocationTargetException, IllegalAccessException,
+            InstantiationException, NoSuchMethodException {
+        NBTMap saved = new NBTMap();
+        //furnace.save((NBTTagCompound) saved.getTagCompound());
+        NMSMethod.save.call(furnace, saved.getTagCompound());
+        saved.removeNBT(RESET_BY_LOAD);
+        return saved.getTagCompound();
+    }
+
+    public static void clear() {
+        pool.clear();
+        worldServer = null;
+        pristine = null;
+    }
+
+    public static int getSize() {
+        return pool.size();
+    }
+
+    public static long getCreated() {
+        return created;
+    }
+
+    public static long getReused() {
+        return reused;
+    }
+
+    public static long getDiscarded() {
+        return discarded;
+    }
+
+    public static void resetStats() {
+        created = 0;
+        reused = 0;
+        discarded = 0;
+    }
+
+    private static Object create() throws NoSuchMethodException, IllegalAccessException, InvocationTargetException,
+            InstantiationException {
+        // create fake furnace tile entity
+        Object furnace;
+        if (KnownVersion.v1_14_R1.before()) {
+            // furnace = new TileEntityFurnace(); // only works pre-1.14
+            furnace = NMSClass.TileEntityFurnace.getClazz().getDeclaredConstructor().newInstance();
+        } else
+        if (KnownVersion.v1_17_R1.before()) {
+            // furnace = new TileEntityFurnaceFurnace();
+            furnace = NMSClass.TileEntityFurnaceFurnace.getClazz().getDeclaredConstructor().newInstance();
+        } else {
+            // this would probably work back to v1_14_R1 but ehh I cant be bothered testing
+            furnace = NMSClass.CraftTileInventoryConverter_Furnace.getClazz().getDeclaredConstructor().newInstance();
+            furnace = NMSMethod.getTileEntity.call(furnace);
+        }
+
+        // assign it a dimension
+        NMS.TileEntity_world.set(furnace, getWorldServer());
+        return furnace;
+    }
+
+    private static Object getWorldServer() throws InvocationTargetException, IllegalAccessException {
+        // the overworld is loaded for as long as the server is running
+        if (worldServer == null) {
+            Object craftServer = NMSClass.CraftServer.getClazz().cast(Bukkit.getServer());
+            Object dedicatedServer = NMSMethod.getServer.call(craftServer);
+            worldServer = NMS.getWorldServer(dedicatedServer);
+        }
+
+        return worldServer;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.furnace;
+
+import com.divisionind.bprm.VirtualFurnace;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * All active virtual furnaces, indexed both by id and by their NMS tile entity (by identity), so a furnace can be
+ * found from an open furnace inventory without scanning every furnace.
+ *
+ * Changes to the registry (and to the released state of a furnace) happen while holding the registry lock. Lookups by
+ * id and iteration do not lock and are safe while furnaces are being added or removed.
+ */
+public class FurnaceRegistry {
+
+    private final Map<UUID, VirtualFurnace> byId = new ConcurrentHashMap<>();
+    private final Map<Object, UUID> byFurnace = new IdentityHashMap<>();
+
+    public synchronized void register(UUID id, VirtualFurnace furnace) {
+        VirtualFurnace previous = byId.put(id, furnace);
+        if (previous != null) byFurnace.remove(previous.getFurnace());
+        byFurnace.put(furnace.getFurnace(), id);
+    }
+
+    public VirtualFurnace get(UUID id) {
+        return byId.get(id);
+    }
+
+    /**
+     * @param furnace NMS tile entity of the furnace
+     * @return the id of the virtual furnace using this tile entity or null if there is none
+     */
+    public synchronized UUID getId(Object furnace) {
+        return byFurnace.get(furnace);
+    }
+
+    /**
+     * Marks a furnace as in use (not released).
+     *
+     * @return the furnace or null if there is no furnace with this id
+     */
+    public synchronized VirtualFurnace acquire(UUID id) {
+        VirtualFurnace furnace = byId.get(id);
+        if (furnace != null) furnace.setReleased(false);
+        return furnace;
+    }
+
+    /**
+     * Marks the virtual furnace using this tile entity as released.
+     *
+     * @param furnace NMS tile entity of the furnace
+     * @return the id and virtual furnace or null if the tile entity does not belong to a virtual furnace
+     */
+    public synchronized Map.Entry<UUID, VirtualFurnace> release(Object furnace) {
+        UUID id = byFurnace.get(furnace);
+        if (id == null)
+            return null;
+
+        VirtualFurnace virtualFurnace = byId.get(id);
+        virtualFurnace.setReleased(true);
+        return new AbstractMap.SimpleImmutableEntry<>(id, virtualFurnace);
+    }
+
+    public synchronized VirtualFurnace remove(UUID id) {
+        VirtualFurnace furnace = byId.remove(id);
+        if (furnace != null) byFurnace.remove(furnace.getFurnace());
+        return furnace;
+    }
+
+    /**
+     * Removes a furnace only if it is still released (it may have been opened again in the mean time).
+     *
+     * @return the removed furnace or null if it was not removed
+     */
+    public synchronized VirtualFurnace removeReleased(UUID id) {
+        VirtualFurnace furnace = byId.get(id);
+        if (furnace == null || !furnace.isReleased())
+            return null;
+
+        return remove(id);
+    }
+
+    public synchronized void clear() {
+        byId.clear();
+        byFurnace.clear();
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public boolean isEmpty() {
+        return byId.isEmpty();
+    }
+
+    /**
+     * @return an unmodifiable view of the furnaces by id
+     */
+    public Set<Map.Entry<UUID, VirtualFurnace>> entrySet() {
+        return Collections.unmodifiableMap(byId).entrySet();
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.furnace;
+
+/**
+ * Simulates a furnace without ticking it. Follows the same rules as the furnace tick in 1.14+, but instead of going
+ * one tick at a time, it jumps straight to the next tick where something happens (an item finishes smelting or the
+ * current fuel runs out). Advancing a furnace by any number of ticks therefore only costs a few operations for every
+ * item smelted.
+ */
+public class FurnaceState {
+
+    // furnace state
+    private int burnTime;
+    private int cookTime;
+    private int cookTimeTotal;
+    private int input;
+    private int fuel;
+    private int output;
+
+    // constants for the current contents
+    private final int fuelTime;
+    private final int recipeCookTime;
+    private final int resultAmount;
+    private final int outputLimit;
+    private final boolean outputMatches;
+    private final boolean fuelHasRemainder;
+
+    private boolean fuelReplaced;
+    private int smelted;
+
+    /**
+     * @param burnTime remaining ticks of the current fuel
+     * @param cookTime progress of the current item
+     * @param cookTimeTotal ticks needed to smelt the current item
+     * @param input number of items to smelt
+     * @param fuel number of fuel items
+     * @param output number of items in the result slot
+     * @param fuelTime ticks one fuel item burns for
+     * @param recipeCookTime ticks needed to smelt one input item or 0 if the input has no recipe
+     * @param resultAmount number of items produced by one smelt
+     * @param outputLimit maximum number of items in the result slot
+     * @param outputMatches whether the result of the recipe can be stacked onto the current result slot
+     * @param fuelHasRemainder whether the fuel leaves an item behind (e.g. a lava bucket leaves a bucket)
+     */
+    public FurnaceState(int burnTime, int cookTime, int cookTimeTotal, int input, int fuel, int output, int fuelTime,
+                        int recipeCookTime, int resultAmount, int outputLimit, boolean outputMatches,
+                        boolean fuelHasRemainder) {
+        this.burnTime = burnTime;
+        this.cookTime = cookTime;
+        this.cookTimeTotal = cookTimeTotal > 0 ? cookTimeTotal : recipeCookTime;
+        this.input = input;
+        this.fuel = fuel;
+        this.output = output;
+        this.fuelTime = fuelTime;
+        this.recipeCookTime = recipeCookTime;
+        this.resultAmount = resultAmount;
+        this.outputLimit = outputLimit;
+        this.outputMatches = outputMatches || output == 0;
+        this.fuelHasRemainder = fuelHasRemainder;
+    }
+
+    /**
+     * Advances the furnace.
+     *
+     * @param ticks number of ticks to advance by
+     * @return the number of ticks it took for the furnace to become idle (can not do anything more without new items)
+     * or the number of ticks advanced if it is still working
+     */
+    public long advance(long ticks) {
+        long remaining = ticks;
+
+        while (remaining > 0) {
+            if (burnTime == 0) {
+                if (!canStart()) {
+                    // idle, progress is lost (over time if there is nothing to smelt) and nothing else will happen
+                    if (fuel > 0 && input > 0) {
+                        cookTime = 0;
+                    } else cookTime = (int) Math.max(0, cookTime - Math.min(remaining, Integer.MAX_VALUE) * 2);
+                    return ticks - remaining;
+                }
+
+                // lights the next fuel
+                tick();
+                remaining--;
+                continue;
+            }
+
+            // skip every tick that keeps burning and does not finish an item
+            long skip;
+            if (canSmelt()) {
+                skip = Math.min(remaining, Math.max(0, Math.min(burnTime - 1, cookTimeTotal - cookTime - 1)));
+                cookTime += skip;
+            } else {
+                skip = Math.min(remaining, burnTime - 1);
+                if (skip > 0) cookTime = 0;
+            }
+            burnTime -= skip;
+            remaining -= skip;
+
+            // the tick where something happens
+            if (remaining > 0) {
+                tick();
+                remaining--;
+            }
+        }
+
+        return ticks;
+    }
+
+    /**
+     * @return the number of ticks until the furnace has nothing left to do
+     */
+    public long ticksUntilIdle() {
+        // advance a copy so this one is left untouched
+        FurnaceState copy = new FurnaceState(burnTime, cookTime, cookTimeTotal, input, fuel, output, fuelTime,
+                recipeCookTime, resultAmount, outputLimit, outputMatches, fuelHasRemainder);
+        long ticks = 0;
+        long step;
+        while ((step = copy.advance(Integer.MAX_VALUE)) == Integer.MAX_VALUE) ticks += step;
+        return ticks + step;
+    }
+
+    private void tick() {
+        if (burnTime > 0) burnTime--;
+
+        if (burnTime > 0 || fuel > 0 && input > 0) {
+            boolean canSmelt = canSmelt();
+            if (burnTime == 0 && canSmelt) {
+                burnTime = fuelTime;
+                if (burnTime > 0) consumeFuel();
+            }
+
+            if (burnTime > 0 && canSmelt) {
+                if (++cookTime == cookTimeTotal) {
+                    cookTime = 0;
+                    cookTimeTotal = recipeCookTime;
+                    input--;
+                    output += resultAmount;
+                    smelted++;
+                }
+            } else cookTime = 0;
+        } else if (cookTime > 0) {
+            cookTime = Math.max(0, cookTime - 2);
+        }
+    }
+
+    private void consumeFuel() {
+        fuel--;
+        if (fuel == 0 && fuelHasRemainder) fuelReplaced = true;
+    }
+
+    private boolean canStart() {
+        return fuel > 0 && fuelTime > 0 && input > 0 && canSmelt();
+    }
+
+    private boolean canSmelt() {
+        return input > 0 && recipeCookTime > 0 && outputMatches && output + resultAmount <= outputLimit;
+    }
+
+    public boolean isBurning() {
+        return burnTime > 0;
+    }
+
+    public int getBurnTime() {
+        return burnTime;
+    }
+
+    public int getCookTime() {
+        return cookTime;
+    }
+
+    public int getCookTimeTotal() {
+        return cookTimeTotal;
+    }
+
+    public int getInput() {
+        return input;
+    }
+
+    public int getFuel() {
+        return fuel;
+    }
+
+    public int getOutput() {
+        return output;
+    }
+
+    /**
+     * @return number of items smelted since this state was created, the furnace records these for the experience it
+     * hands out
+     */
+    public int getSmelted() {
+        return smelted;
+    }
+
+    /**
+     * @return true if the last fuel item has been used up and replaced by its remainder
+     */
+    public boolean isFuelReplaced() {
+        return fuelReplaced;
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.furnace;
+
+import com.divisionind.bprm.Backpacks;
+import com.divisionind.bprm.PotentialBackpackItem;
+import com.divisionind.bprm.VirtualFurnace;
+import com.divisionind.bprm.backpacks.BPFurnace;
+import com.divisionind.bprm.exceptions.UnknownItemLocationException;
+import com.divisionind.bprm.location.GroundItemIndex;
+import com.divisionind.bprm.nms.NBTMap;
+import com.divisionind.bprm.scheduler.TickScheduler;
+import com.divisionind.bprm.scheduler.TickSubscriber;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Ticks all virtual furnaces. Only subscribed to the {@link TickScheduler} while there are furnaces to tick.
+ *
+ * Furnaces are split into shards and only one shard is ticked per game tick. When a furnace is ticked, it is ticked
+ * once for every game tick since it was last ticked, so it smelts at the same speed regardless of the shard count.
+ * If a time budget is set, furnaces that did not fit within it are deferred and ticked first on the next game tick.
+ */
+public class FurnaceTicker implements TickSubscriber {
+
+    private static final FurnaceTicker INSTANCE = new FurnaceTicker();
+
+    public static final FurnaceRegistry VIRTUAL_FURNACES = new FurnaceRegistry();
+
+    private static final long FAILURE_REPORT_INTERVAL = 60000L;
+
+    private static int shards = 1;
+    private static long budgetNanos;
+
+    private final Queue<UUID> deferred = new ArrayDeque<>();
+
+    // failed ticks are expected (see process), they are counted for /bp stats and only logged at FINE once in a while.
+    // the first failure starts a window, everything that failed within it is logged together once it is over or once
+    // the ticker stops
+    private static long tickFailures;
+    private static long failuresSinceReport;
+    private static long failureWindowStart;
+    private static Throwable latestFailure;
+
+    // statistics
+    private long lastNanos;
+    private double averageNanos;
+    private long maxNanos;
+    private int lastFurnaces;
+    private long lastInternalTicks;
+
+    /**
+     * @param shards number of groups the furnaces are split into (1 ticks every furnace every tick)
+     * @param budgetMicros maximum time spent ticking furnaces per tick in microseconds or 0 for no limit
+     */
+    public static void configure(int shards, long budgetMicros) {
+        FurnaceTicker.shards = Math.max(1, shards);
+        FurnaceTicker.budgetNanos = Math.max(0, budgetMicros) * 1000L;
+    }
+
+    /**
+     * Adds a virtual furnace and starts ticking if this is the first one.
+     */
+    public static void track(UUID id, VirtualFurnace furnace) {
+        furnace.setLastTick(TickScheduler.getCurrentTick());
+        VIRTUAL_FURNACES.register(id, furnace);
+        TickScheduler.subscribe(INSTANCE);
+    }
+
+    public static FurnaceTicker getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public void onTick(long tick) {
+        long start = System.nanoTime();
+        long deadline = budgetNanos == 0 ? Long.MAX_VALUE : start + budgetNanos;
+        int furnaces = 0;
+        long internalTicks = 0;
+
+        // whatever did not fit in the last tick goes first
+        while (!deferred.isEmpty() && System.nanoTime() < deadline) {
+            UUID id = deferred.poll();
+            VirtualFurnace furnace = VIRTUAL_FURNACES.get(id);
+            if (furnace == null) continue;
+
+            internalTicks += process(id, furnace, tick);
+            furnaces++;
+        }
+
+        int shard = (int) (tick % shards);
+        for (Map.Entry<UUID, VirtualFurnace> entry : VIRTUAL_FURNACES.entrySet()) {
+            VirtualFurnace furnace = entry.getValue();
+            if (furnace.getShardKey() % shards != shard || furnace.isDeferred()) continue;
+
+            if (System.nanoTime() >= deadline) {
+                // out of time, catch up next tick
+                furnace.setDeferred(true);
+                deferred.add(entry.getKey());
+                continue;
+            }
+
+            internalTicks += process(entry.getKey(), furnace, tick);
+            furnaces++;
+        }
+
+        // nothing left to tick, stop being called until a furnace is added again
+        boolean idle = VIRTUAL_FURNACES.isEmpty();
+        if (idle) {
+            deferred.clear();
+            TickScheduler.unsubscribe(this);
+        }
+
+        lastNanos = System.nanoTime() - start;
+        averageNanos = averageNanos == 0 ? lastNanos : averageNanos * 0.95D + lastNanos * 0.05D;
+        if (lastNanos > maxNanos) maxNanos = lastNanos;
+        lastFurnaces = furnaces;
+        lastInternalTicks = internalTicks;
+
+        if (failuresSinceReport > 0) reportFailures(idle);
+    }
+
+    /**
+     * Brings a furnace up to the current tick.
+     *
+     * @return number of times the furnace was ticked
+     */
+    private static long process(UUID id, VirtualFurnace furnace, long tick) {
+        furnace.setDeferred(false);
+
+        // nobody is looking at released furnaces, so skip straight to when they are done
+        if (furnace.isReleased() && FurnaceFastForward.sleep(furnace)) {
+            if (tick < furnace.getWakeTick())
+                return 0;
+
+            FurnaceFastForward.wake(furnace, tick);
+        }
+
+        if (!furnace.isBurning() && furnace.isReleased()) {
+            release(id);
+            return 0;
+        }
+
+        long behind = tick - furnace.getLastTick();
+        furnace.setLastTick(tick);
+        for (long i = 0; i < behind; i++) {
+            try {
+                furnace.tick();
+            } catch (Exception e) {
+                // will throw inconsequential exception when trying to set blockstate to lit or unlit
+                // count it and move on
+                tickFailed(e);
+            }
+        }
+
+        return behind;
+    }
+
+    private static void tickFailed(Exception e) {
+        tickFailures++;
+        if (failuresSinceReport++ == 0) failureWindowStart = System.currentTimeMillis();
+        latestFailure = e instanceof InvocationTargetException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * @param now whether to log before the window is over, nothing would report the failures otherwise
+     */
+    private static void reportFailures(boolean now) {
+        long elapsed = System.currentTimeMillis() - failureWindowStart;
+        if (!now && elapsed < FAILURE_REPORT_INTERVAL)
+            return;
+
+        Backpacks.getInstance().getLogger().log(Level.FINE, String.format(
+                "%s virtual furnace tick(s) failed in the last %s seconds. Latest: %s",
+                failuresSinceReport, elapsed / 1000, latestFailure), latestFailure);
+        failuresSinceReport = 0;
+        latestFailure = null;
+    }
+
+    private static void release(UUID id) {
+        // we need to at least try to update the furnace backpack's NBT data before exiting here
+        // in order to preserve what the furnace did during this time (not a big deal if it doesnt
+        // it is just kinda annoying)
+        VirtualFurnace virtualFurnace = VIRTUAL_FURNACES.removeReleased(id);
+        if (virtualFurnace != null) {
+            FurnacePersistence.forget(id);
+            GroundItemIndex.removeFurnace(id);
+        }
+
+        if (virtualFurnace != null && virtualFurnace.getItemLocation() != null) {
+            try {
+                // saved now, the tile entity is pooled below and the backpack may only be found later (offline players)
+                NBTMap furnaceData = BPFurnace.furnaceDataOf(virtualFurnace.getFurnace());
+                try {
+                    // written onto the backpack as it is now, anything that happened to it since it was tracked (e.g.
+                    // durability loss, a rename) is kept. it is only found if it was not written to since (it would
+                    // be a newer generation)
+                    virtualFurnace.getItemLocation().update(current -> {
+                        PotentialBackpackItem backpack = new PotentialBackpackItem(current);
+                        backpack.setAsMap("furnace_data", furnaceData);
+                        backpack.nextGeneration();
+                        return backpack.getModifiedItem();
+                    });
+                } catch (UnknownItemLocationException e) {
+                    // very likely error here (as tracking is not perfect), ignore it for now
+                    //e.printStackTrace(); // for debugging purposes
+                }
+            } catch (InvocationTargetException | IllegalAccessException | InstantiationException
+                    | NoSuchMethodException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // done with the tile entity, it can be reused for the next furnace
+        if (virtualFurnace != null) FurnacePool.release(virtualFurnace.getFurnace());
+    }
+
+    /**
+     * Removes a furnace without writing it back to its backpack, because the backpack is already newer than it.
+     */
+    public static void discard(UUID id) {
+        VirtualFurnace virtualFurnace = VIRTUAL_FURNACES.remove(id);
+        if (virtualFurnace == null)
+            return;
+
+        FurnacePersistence.forget(id);
+        GroundItemIndex.removeFurnace(id);
+        FurnacePool.release(virtualFurnace.getFurnace());
+    }
+
+    public static int getShards() {
+        return shards;
+    }
+
+    public static long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    public long getLastNanos() {
+        return lastNanos;
+    }
+
+    public double getAverageNanos() {
+        return averageNanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public int getLastFurnaces() {
+        return lastFurnaces;
+    }
+
+    public long getLastInternalTicks() {
+        return lastInternalTicks;
+    }
+
+    public static long getTickFailures() {
+        return tickFailures;
+    }
+
+    public int getDeferredCount() {
+        return deferred.size();
+    }
+
+    public void resetStats() {
+        lastNanos = 0;
+        averageNanos = 0;
+        maxNanos = 0;
+        tickFailures = 0;
+        failuresSinceReport = 0;
+        failureWindowStart = 0;
+        latestFailure = null;
+    }
+}
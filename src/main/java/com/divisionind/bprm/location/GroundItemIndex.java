@@ -0,0 +1,89 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.location;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Maps the ids of virtual furnaces to the dropped item entity their backpack currently is, so that a dropped furnace
+ * backpack can be found without looking through every entity in the world. Maintained by the tracking events.
+ */
+public class GroundItemIndex {
+
+    private static final Map<UUID, UUID> entityByFurnace = new HashMap<>();
+    private static final Map<UUID, UUID> furnaceByEntity = new HashMap<>();
+
+    /**
+     * @param furnaceId id of the virtual furnace
+     * @param entityId id of the item entity the furnace backpack was dropped as
+     */
+    public static void put(UUID furnaceId, UUID entityId) {
+        UUID oldEntity = entityByFurnace.put(furnaceId, entityId);
+        if (oldEntity != null) furnaceByEntity.remove(oldEntity);
+        furnaceByEntity.put(entityId, furnaceId);
+    }
+
+    /**
+     * @return id of the item entity or null if the furnace backpack is not known to be on the ground
+     */
+    public static UUID getEntity(UUID furnaceId) {
+        return entityByFurnace.get(furnaceId);
+    }
+
+    /**
+     * Called when an item entity is removed (picked up or despawned).
+     */
+    public static void removeEntity(UUID entityId) {
+        if (furnaceByEntity.isEmpty())
+            return;
+
+        UUID furnaceId = furnaceByEntity.remove(entityId);
+        if (furnaceId != null) entityByFurnace.remove(furnaceId);
+    }
+
+    /**
+     * Called when the virtual furnace no longer exists.
+     */
+    public static void removeFurnace(UUID furnaceId) {
+        UUID entityId = entityByFurnace.remove(furnaceId);
+        if (entityId != null) furnaceByEntity.remove(entityId);
+    }
+
+    /**
+     * Called when an item entity was merged into another.
+     */
+    public static void moveEntity(UUID from, UUID to) {
+        if (furnaceByEntity.isEmpty())
+            return;
+
+        UUID furnaceId = furnaceByEntity.remove(from);
+        if (furnaceId != null) put(furnaceId, to);
+    }
+
+    public static int size() {
+        return entityByFurnace.size();
+    }
+
+    public static void clear() {
+        entityByFurnace.clear();
+        furnaceByEntity.clear();
+    }
+}
@@ -22,6 +22,8 @@ import com.divisionind.bprm.exceptions.UnknownItemLocationException;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
+import java.lang.reflect.InvocationTargetException;
+
 public abstract class InventoryLocation implements SurfaceLocation {
 
     public abstract Inventory resolveInventory() throws UnknownItemLocationException;
@@ -32,19 +34,30 @@ public abstract class InventoryLocation implements SurfaceLocation {
         this.lastKnownSlot = lastKnownSlot;
     }
 
+    public int getLastKnownSlot() {
+        return lastKnownSlot;
+    }
+
     @Override
-    public void replace(ItemStack newItem, ItemStack surfaceItem) throws UnknownItemLocationException {
-        Inventory inv = resolveInventory();
-        ItemStack itemAtLastLoc = inv.getItem(lastKnownSlot);
+    public void replace(ItemModifier modifier, ItemStack surfaceItem) throws UnknownItemLocationException,
+            InvocationTargetException, IllegalAccessException, InstantiationException, NoSuchMethodException {
+        replace(resolveInventory(), modifier, surfaceItem);
+    }
+
+    protected void replace(Inventory inv, ItemModifier modifier, ItemStack surfaceItem)
+            throws UnknownItemLocationException, InvocationTargetException, IllegalAccessException,
+            InstantiationException, NoSuchMethodException {
+        ItemMatcher matcher = ItemMatcher.of(surfaceItem);
 
-        if (surfaceItem.equals(itemAtLastLoc)) {
-            inv.setItem(lastKnownSlot, newItem);
+        // the last slot it was found in is almost always where it still is
+        if (lastKnownSlot >= 0 && lastKnownSlot < inv.getSize() && matcher.matches(inv.getItem(lastKnownSlot))) {
+            inv.setItem(lastKnownSlot, modifier.modify(inv.getItem(lastKnownSlot)));
         } else {
             ItemStack[] contents = inv.getContents();
 
             for (int i = 0; i < contents.length; i++) {
-                if (surfaceItem.equals(contents[i])) {
-                    inv.setItem(lastKnownSlot = i, newItem);
+                if (matcher.matches(contents[i])) {
+                    inv.setItem(lastKnownSlot = i, modifier.modify(contents[i]));
                     return;
                 }
             }
@@ -0,0 +1,86 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.location;
+
+import com.divisionind.bprm.BackpackProbe;
+import org.bukkit.inventory.ItemStack;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.UUID;
+
+/**
+ * Recognizes a tracked backpack. Backpacks with an id are matched by just that id, which is read without copying the
+ * items and does not care about anything else about the item (e.g. durability). Backpacks without one (from before ids
+ * were assigned) fall back to {@link ItemStack#equals(Object)}.
+ *
+ * A backpack that was written to more often than the item (a newer generation, see
+ * {@link com.divisionind.bprm.PotentialBackpackItem#getGeneration()}) does not match, the item is outdated and writing it
+ * back would undo those writes.
+ */
+public class ItemMatcher {
+
+    private final ItemStack item;
+    private final UUID id;
+    private final long generation;
+
+    private ItemMatcher(ItemStack item, UUID id, long generation) {
+        this.item = item;
+        this.id = id;
+        this.generation = generation;
+    }
+
+    /**
+     * @param item the item to look for
+     * @return a matcher for the item
+     */
+    public static ItemMatcher of(ItemStack item) {
+        UUID id;
+        long generation;
+        try {
+            id = BackpackProbe.idOf(item);
+            generation = BackpackProbe.generationOf(item);
+        } catch (InvocationTargetException | IllegalAccessException e) {
+            id = null;
+            generation = 0;
+        }
+
+        return new ItemMatcher(item, id, generation);
+    }
+
+    public boolean matches(ItemStack candidate) {
+        if (id == null)
+            return item.equals(candidate);
+
+        if (!BackpackProbe.canBeBackpack(candidate))
+            return false;
+
+        try {
+            return id.equals(BackpackProbe.idOf(candidate)) && BackpackProbe.generationOf(candidate) <= generation;
+        } catch (InvocationTargetException | IllegalAccessException e) {
+            return item.equals(candidate);
+        }
+    }
+
+    /**
+     * @return the id of the backpack or null if it does not have one
+     */
+    public UUID getId() {
+        return id;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.location;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Changes a tracked item once it has been found. It is given the item as it is now, so whatever happened to the item
+ * since it was tracked (e.g. durability loss or a rename) is kept.
+ */
+public interface ItemModifier {
+
+    /**
+     * @param current the item as it is now
+     * @return what to replace it with
+     */
+    ItemStack modify(ItemStack current) throws InvocationTargetException, IllegalAccessException,
+            InstantiationException, NoSuchMethodException;
+}
@@ -21,6 +21,8 @@ package com.divisionind.bprm.location;
 import com.divisionind.bprm.exceptions.UnknownItemLocationException;
 import org.bukkit.inventory.ItemStack;
 
+import java.lang.reflect.InvocationTargetException;
+
 public class ItemStackPointer {
 
     // TODO support furnace backpacks in other backpacks
@@ -35,16 +37,17 @@ public class ItemStackPointer {
 
     /**
      * Updates itemstack at its current tracked location
-     * @param item item to use as updated value
+     * @param modifier makes the updated value from the item as it is now
      */
-    public void update(ItemStack item) throws UnknownItemLocationException {
+    public void update(ItemModifier modifier) throws UnknownItemLocationException, InvocationTargetException,
+            IllegalAccessException, InstantiationException, NoSuchMethodException {
         // must have a known surface location to resolve
         if (surfaceLocation == null) throw new UnknownItemLocationException();
 
         // modify items in backpack recursively, returning ItemStack (which is the modified backpack) until you can
-        //   call surfaceLocation.replace(item, surfaceItem);
+        //   call surfaceLocation.replace(modifier, surfaceItem);
         // currently I am not supporting backpack nesting
-        surfaceLocation.replace(item, surfaceItem);
+        surfaceLocation.replace(modifier, surfaceItem);
     }
 
     public ItemStack getSurfaceItem() {
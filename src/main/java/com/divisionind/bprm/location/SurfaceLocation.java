@@ -19,9 +19,25 @@
 package com.divisionind.bprm.location;
 
 import com.divisionind.bprm.exceptions.UnknownItemLocationException;
+import com.divisionind.bprm.nms.NBTMap;
 import org.bukkit.inventory.ItemStack;
 
+import java.lang.reflect.InvocationTargetException;
+
 public interface SurfaceLocation {
-    // item that we are replacing should equal surface item
-    void replace(ItemStack newItem, ItemStack surfaceItem) throws UnknownItemLocationException;
+    /**
+     * Finds the tracked item and replaces it with what the modifier makes of it.
+     *
+     * @param modifier makes the new item from the one that was found
+     * @param surfaceItem the item as it was tracked, identifies it (see {@link ItemMatcher})
+     */
+    void replace(ItemModifier modifier, ItemStack surfaceItem) throws UnknownItemLocationException,
+            InvocationTargetException, IllegalAccessException, InstantiationException, NoSuchMethodException;
+
+    /**
+     * Saves this location so it can be recreated with {@link SurfaceLocations#load(NBTMap)}.
+     *
+     * @param map map to save to
+     */
+    void save(NBTMap map) throws InvocationTargetException, IllegalAccessException;
 }
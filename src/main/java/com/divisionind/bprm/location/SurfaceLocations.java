@@ -0,0 +1,82 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.location;
+
+import com.divisionind.bprm.location.itemlocs.InventoryLocationBlock;
+import com.divisionind.bprm.location.itemlocs.InventoryLocationEnderChest;
+import com.divisionind.bprm.location.itemlocs.InventoryLocationPlayer;
+import com.divisionind.bprm.location.itemlocs.LocationGround;
+import com.divisionind.bprm.nms.NBTMap;
+import com.divisionind.bprm.nms.reflect.NBTType;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.block.BlockState;
+import org.bukkit.inventory.BlockInventoryHolder;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.UUID;
+
+/**
+ * Recreates surface locations saved with {@link SurfaceLocation#save(NBTMap)}.
+ */
+public class SurfaceLocations {
+
+    public static final String TYPE = "type";
+
+    public static final String TYPE_PLAYER = "player";
+    public static final String TYPE_ENDER_CHEST = "ender_chest";
+    public static final String TYPE_BLOCK = "block";
+    public static final String TYPE_GROUND = "ground";
+
+    /**
+     * @param map a saved location
+     * @return the location or null if it no longer exists (e.g. the world was removed)
+     */
+    public static SurfaceLocation load(NBTMap map) throws InvocationTargetException, IllegalAccessException {
+        String type = (String) map.getNBT(NBTType.STRING, TYPE);
+        if (type == null)
+            return null;
+
+        switch (type) {
+            case TYPE_PLAYER:
+                return new InventoryLocationPlayer(map.getInt("slot"), getUUID(map, "player"));
+            case TYPE_ENDER_CHEST:
+                return new InventoryLocationEnderChest(map.getInt("slot"), getUUID(map, "player"));
+            case TYPE_BLOCK:
+                World blockWorld = Bukkit.getWorld(getUUID(map, "world"));
+                if (blockWorld == null) return null;
+
+                BlockState state = blockWorld.getBlockAt(map.getInt("x"), map.getInt("y"), map.getInt("z")).getState();
+                if (!(state instanceof BlockInventoryHolder)) return null;
+
+                return new InventoryLocationBlock(map.getInt("slot"), (BlockInventoryHolder) state);
+            case TYPE_GROUND:
+                World world = Bukkit.getWorld(getUUID(map, "world"));
+                if (world == null) return null;
+
+                return new LocationGround(world, getUUID(map, "furnace"), map.getInt("chunk_x"), map.getInt("chunk_z"));
+            default:
+                return null;
+        }
+    }
+
+    private static UUID getUUID(NBTMap map, String key) throws InvocationTargetException, IllegalAccessException {
+        return UUID.fromString((String) map.getNBT(NBTType.STRING, key));
+    }
+}
@@ -19,10 +19,15 @@
 package com.divisionind.bprm.location.itemlocs;
 
 import com.divisionind.bprm.location.InventoryLocation;
+import com.divisionind.bprm.location.SurfaceLocations;
+import com.divisionind.bprm.nms.NBTMap;
+import com.divisionind.bprm.nms.reflect.NBTType;
 import org.bukkit.block.Block;
 import org.bukkit.inventory.BlockInventoryHolder;
 import org.bukkit.inventory.Inventory;
 
+import java.lang.reflect.InvocationTargetException;
+
 public class InventoryLocationBlock extends InventoryLocation {
 
     private final BlockInventoryHolder storageBlockInvHolder;
@@ -39,6 +44,17 @@ public class InventoryLocationBlock extends InventoryLocation {
         return storageBlockInvHolder.getInventory();
     }
 
+    @Override
+    public void save(NBTMap map) throws InvocationTargetException, IllegalAccessException {
+        Block storageBlock = storageBlockInvHolder.getBlock();
+        map.setNBT(NBTType.STRING, SurfaceLocations.TYPE, SurfaceLocations.TYPE_BLOCK);
+        map.setInt("slot", getLastKnownSlot());
+        map.setNBT(NBTType.STRING, "world", storageBlock.getWorld().getUID().toString());
+        map.setInt("x", storageBlock.getX());
+        map.setInt("y", storageBlock.getY());
+        map.setInt("z", storageBlock.getZ());
+    }
+
     @Override
     public String toString() {
         Block storageBlock = storageBlockInvHolder.getBlock();
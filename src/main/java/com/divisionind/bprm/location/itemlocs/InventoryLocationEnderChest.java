@@ -18,10 +18,13 @@
 
 package com.divisionind.bprm.location.itemlocs;
 
-import com.divisionind.bprm.exceptions.UnknownItemLocationException;
+import com.divisionind.bprm.location.SurfaceLocations;
+import com.divisionind.bprm.nms.NBTMap;
+import com.divisionind.bprm.nms.reflect.NBTType;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 
+import java.lang.reflect.InvocationTargetException;
 import java.util.UUID;
 
 public class InventoryLocationEnderChest extends InventoryLocationPlayer {
@@ -31,12 +34,16 @@ public class InventoryLocationEnderChest extends InventoryLocationPlayer {
     }
 
     @Override
-    public Inventory resolveInventory() throws UnknownItemLocationException {
-        Player player = alwaysPlayer.resolvePlayer();
-        if (player == null) throw new UnknownItemLocationException();
+    protected Inventory inventoryOf(Player player) {
         return player.getEnderChest();
     }
 
+    @Override
+    public void save(NBTMap map) throws InvocationTargetException, IllegalAccessException {
+        map.setNBT(NBTType.STRING, SurfaceLocations.TYPE, SurfaceLocations.TYPE_ENDER_CHEST);
+        saveSlotAndPlayer(map);
+    }
+
     @Override
     public String toString() {
         return "Enderchest (" + alwaysPlayer.getName() + ")";
@@ -21,10 +21,15 @@ package com.divisionind.bprm.location.itemlocs;
 import com.divisionind.bprm.AlwaysPlayer;
 import com.divisionind.bprm.exceptions.UnknownItemLocationException;
 import com.divisionind.bprm.location.InventoryLocation;
+import com.divisionind.bprm.location.ItemModifier;
+import com.divisionind.bprm.location.SurfaceLocations;
+import com.divisionind.bprm.nms.NBTMap;
+import com.divisionind.bprm.nms.reflect.NBTType;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
+import java.lang.reflect.InvocationTargetException;
 import java.util.UUID;
 
 public class InventoryLocationPlayer extends InventoryLocation {
@@ -38,15 +43,46 @@ public class InventoryLocationPlayer extends InventoryLocation {
 
     @Override
     public Inventory resolveInventory() throws UnknownItemLocationException {
-        Player player = alwaysPlayer.resolvePlayer();
+        Player player = alwaysPlayer.getOnlinePlayer();
         if (player == null) throw new UnknownItemLocationException();
+        return inventoryOf(player);
+    }
+
+    protected Inventory inventoryOf(Player player) {
         return player.getInventory();
     }
 
     @Override
-    public void replace(ItemStack newItem, ItemStack surfaceItem) throws UnknownItemLocationException {
-        super.replace(newItem, surfaceItem);
-        alwaysPlayer.safeSave(); // must save the player data if it is an instance we created ourselves
+    public void replace(ItemModifier modifier, ItemStack surfaceItem) throws UnknownItemLocationException,
+            InvocationTargetException, IllegalAccessException, InstantiationException, NoSuchMethodException {
+        Player player = alwaysPlayer.getOnlinePlayer();
+        if (player != null) {
+            replace(inventoryOf(player), modifier, surfaceItem);
+            return;
+        }
+
+        // offline players are loaded (and saved) in the background, so it can not be known here if this worked
+        alwaysPlayer.modify(offlinePlayer -> {
+            try {
+                replace(inventoryOf(offlinePlayer), modifier, surfaceItem);
+            } catch (UnknownItemLocationException e) {
+                // same as when they are online, tracking is not perfect
+            } catch (InvocationTargetException | IllegalAccessException | InstantiationException
+                    | NoSuchMethodException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    @Override
+    public void save(NBTMap map) throws InvocationTargetException, IllegalAccessException {
+        map.setNBT(NBTType.STRING, SurfaceLocations.TYPE, SurfaceLocations.TYPE_PLAYER);
+        saveSlotAndPlayer(map);
+    }
+
+    protected void saveSlotAndPlayer(NBTMap map) throws InvocationTargetException, IllegalAccessException {
+        map.setInt("slot", getLastKnownSlot());
+        map.setNBT(NBTType.STRING, "player", alwaysPlayer.getPlayerId().toString());
     }
 
     @Override
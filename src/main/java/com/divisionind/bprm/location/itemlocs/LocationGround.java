@@ -19,37 +19,102 @@
 package com.divisionind.bprm.location.itemlocs;
 
 import com.divisionind.bprm.exceptions.UnknownItemLocationException;
+import com.divisionind.bprm.location.GroundItemIndex;
+import com.divisionind.bprm.location.ItemModifier;
+import com.divisionind.bprm.location.ItemMatcher;
 import com.divisionind.bprm.location.SurfaceLocation;
+import com.divisionind.bprm.location.SurfaceLocations;
+import com.divisionind.bprm.nms.KnownVersion;
+import com.divisionind.bprm.nms.NBTMap;
+import com.divisionind.bprm.nms.reflect.NBTType;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Entity;
-import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Item;
 import org.bukkit.inventory.ItemStack;
 
-import java.util.List;
+import java.lang.reflect.InvocationTargetException;
+import java.util.UUID;
 
 public class LocationGround implements SurfaceLocation {
 
     private final World lastWorld;
+    private final UUID furnaceId;
+    private int chunkX;
+    private int chunkZ;
 
-    public LocationGround(World lastWorld) {
+    public LocationGround(Item item, UUID furnaceId) {
+        this(item.getWorld(), furnaceId, item.getLocation().getBlockX() >> 4, item.getLocation().getBlockZ() >> 4);
+    }
+
+    public LocationGround(World lastWorld, UUID furnaceId, int chunkX, int chunkZ) {
         this.lastWorld = lastWorld;
+        this.furnaceId = furnaceId;
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
     }
 
     @Override
-    public void replace(ItemStack newItem, ItemStack surfaceItem) throws UnknownItemLocationException {
-        List<Entity> entityList = lastWorld.getEntities();
-        entityList.removeIf(entity -> !entity.getType().equals(EntityType.DROPPED_ITEM));
-
-        for (Entity ent : entityList) {
-            Item item = (Item) ent;
-            if (surfaceItem.equals(item.getItemStack())) {
-                item.setItemStack(newItem);
-                return;
+    public void replace(ItemModifier modifier, ItemStack surfaceItem) throws UnknownItemLocationException,
+            InvocationTargetException, IllegalAccessException, InstantiationException, NoSuchMethodException {
+        ItemMatcher matcher = ItemMatcher.of(surfaceItem);
+        Item item = findIndexed(matcher);
+
+        // not indexed (e.g. after a restart), the item can not have gone far
+        if (item == null) {
+            item = findNearby(matcher);
+            if (item == null) throw new UnknownItemLocationException();
+            GroundItemIndex.put(furnaceId, item.getUniqueId());
+        }
+
+        item.setItemStack(modifier.modify(item.getItemStack()));
+        Location location = item.getLocation();
+        chunkX = location.getBlockX() >> 4;
+        chunkZ = location.getBlockZ() >> 4;
+    }
+
+    private Item findIndexed(ItemMatcher matcher) {
+        // Bukkit.getEntity(UUID) does not exist before 1.11, those servers always scan the chunks
+        if (KnownVersion.v1_11_R1.before())
+            return null;
+
+        UUID entityId = GroundItemIndex.getEntity(furnaceId);
+        if (entityId == null)
+            return null;
+
+        Entity entity = Bukkit.getEntity(entityId);
+        if (entity instanceof Item && entity.isValid() && matcher.matches(((Item) entity).getItemStack()))
+            return (Item) entity;
+
+        GroundItemIndex.removeEntity(entityId);
+        return null;
+    }
+
+    private Item findNearby(ItemMatcher matcher) {
+        // the chunk it was last seen in and the ones around it
+        for (int x = chunkX - 1; x <= chunkX + 1; x++) {
+            for (int z = chunkZ - 1; z <= chunkZ + 1; z++) {
+                if (!lastWorld.isChunkLoaded(x, z))
+                    continue;
+
+                for (Entity ent : lastWorld.getChunkAt(x, z).getEntities()) {
+                    if (ent instanceof Item && matcher.matches(((Item) ent).getItemStack()))
+                        return (Item) ent;
+                }
             }
         }
 
-        throw new UnknownItemLocationException();
+        return null;
+    }
+
+    @Override
+    public void save(NBTMap map) throws InvocationTargetException, IllegalAccessException {
+        map.setNBT(NBTType.STRING, SurfaceLocations.TYPE, SurfaceLocations.TYPE_GROUND);
+        map.setNBT(NBTType.STRING, "world", lastWorld.getUID().toString());
+        map.setNBT(NBTType.STRING, "furnace", furnaceId.toString());
+        map.setInt("chunk_x", chunkX);
+        map.setInt("chunk_z", chunkZ);
     }
 
     @Override
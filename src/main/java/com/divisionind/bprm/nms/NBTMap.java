@@ -18,10 +18,13 @@
 
 package com.divisionind.bprm.nms;
 
+import com.divisionind.bprm.nms.reflect.NBTAccessors;
 import com.divisionind.bprm.nms.reflect.NBTType;
 import com.divisionind.bprm.nms.reflect.NMSClass;
 import com.divisionind.bprm.nms.reflect.NMSMethod;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Set;
 
@@ -43,7 +46,7 @@ public class NBTMap {
     }
 
     public void setNBT(NBTType type, String key, Object value) throws InvocationTargetException, IllegalAccessException {
-        type.getSet().invoke(tagCompound, key, value);
+        type.getSetter().set(tagCompound, key, value);
     }
 
     @Deprecated
@@ -54,7 +57,7 @@ public class NBTMap {
     }
 
     public Object getNBT(NBTType type, String key) throws InvocationTargetException, IllegalAccessException {
-        return type.getGet().invoke(tagCompound, key);
+        return type.getGetter().get(tagCompound, key);
     }
 
     public <T> T getNBT(Class<T> clazz, String key) throws InvocationTargetException, IllegalAccessException {
@@ -64,7 +67,7 @@ public class NBTMap {
     }
 
     public void removeNBT(String key) throws InvocationTargetException, IllegalAccessException {
-        NMSMethod.removeTag.getMethod().invoke(tagCompound, key);
+        NMSMethod.removeTag.call(tagCompound, key);
     }
 
     public void setAsMap(String key, NBTMap value) throws InvocationTargetException, IllegalAccessException {
@@ -77,15 +80,94 @@ public class NBTMap {
     }
 
     public boolean hasNBT(String key) throws InvocationTargetException, IllegalAccessException {
-        return (boolean) NMSMethod.hasKey.getMethod().invoke(tagCompound, key);
+        return (boolean) NMSMethod.hasKey.call(tagCompound, key);
     }
 
     public Set<String> getKeys() throws InvocationTargetException, IllegalAccessException {
-        return (Set<String>) NMSMethod.getKeys.getMethod().invoke(tagCompound);
+        return (Set<String>) NMSMethod.getKeys.call(tagCompound);
+    }
+
+    /**
+     * Writes this compound in Minecraft's native (uncompressed) NBT format.
+     *
+     * @param out output to write to
+     */
+    public void write(DataOutput out) throws InvocationTargetException, IllegalAccessException {
+        NMSMethod.writeCompound.call(tagCompound, out);
+    }
+
+    /**
+     * Reads a compound written by {@link #write(DataOutput)}.
+     *
+     * @param in input to read from
+     * @return the compound read
+     */
+    public static NBTMap read(DataInput in) throws InvocationTargetException, IllegalAccessException {
+        return new NBTMap(NMSMethod.readCompound.call(in));
     }
 
     public byte getKeyInternalTypeId(String key) throws InvocationTargetException, IllegalAccessException {
-        Object nbtBase = NBTType.COMPOUND.getGet().invoke(tagCompound, key);
-        return (byte) NMSMethod.getTypeId.getMethod().invoke(nbtBase);
+        Object nbtBase = NBTType.COMPOUND.getGetter().get(tagCompound, key);
+        return (byte) NMSMethod.getTypeId.call(nbtBase);
+    }
+
+    /*
+     * Primitive specialized accessors, these do not box their values like getNBT/setNBT do
+     */
+
+    public int getInt(String key) throws InvocationTargetException, IllegalAccessException {
+        return NBTAccessors.INT_GETTER.get(tagCompound, key);
+    }
+
+    public void setInt(String key, int value) throws InvocationTargetException, IllegalAccessException {
+        NBTAccessors.INT_SETTER.set(tagCompound, key, value);
+    }
+
+    public long getLong(String key) throws InvocationTargetException, IllegalAccessException {
+        return NBTAccessors.LONG_GETTER.get(tagCompound, key);
+    }
+
+    public void setLong(String key, long value) throws InvocationTargetException, IllegalAccessException {
+        NBTAccessors.LONG_SETTER.set(tagCompound, key, value);
+    }
+
+    public byte getByte(String key) throws InvocationTargetException, IllegalAccessException {
+        return NBTAccessors.BYTE_GETTER.get(tagCompound, key);
+    }
+
+    public void setByte(String key, byte value) throws InvocationTargetException, IllegalAccessException {
+        NBTAccessors.BYTE_SETTER.set(tagCompound, key, value);
+    }
+
+    public short getShort(String key) throws InvocationTargetException, IllegalAccessException {
+        return NBTAccessors.SHORT_GETTER.get(tagCompound, key);
+    }
+
+    public void setShort(String key, short value) throws InvocationTargetException, IllegalAccessException {
+        NBTAccessors.SHORT_SETTER.set(tagCompound, key, value);
+    }
+
+    public float getFloat(String key) throws InvocationTargetException, IllegalAccessException {
+        return NBTAccessors.FLOAT_GETTER.get(tagCompound, key);
+    }
+
+    public void setFloat(String key, float value) throws InvocationTargetException, IllegalAccessException {
+        NBTAccessors.FLOAT_SETTER.set(tagCompound, key, value);
+    }
+
+    public double getDouble(String key) throws InvocationTargetException, IllegalAccessException {
+        return NBTAccessors.DOUBLE_GETTER.get(tagCompound, key);
+    }
+
+    public void setDouble(String key, double value) throws InvocationTargetException, IllegalAccessException {
+        NBTAccessors.DOUBLE_SETTER.set(tagCompound, key, value);
+    }
+
+    public boolean getBoolean(String key) throws InvocationTargetException, IllegalAccessException {
+        return NBTAccessors.BOOLEAN_GETTER.get(tagCompound, key);
+    }
+
+    public void setBoolean(String key, boolean value) throws InvocationTargetException, IllegalAccessException {
+        NBTAccessors.BOOLEAN_SETTER.set(tagCompound, key, value);
     }
 }
@@ -19,6 +19,7 @@
 package com.divisionind.bprm.nms;
 
 import com.divisionind.bprm.nms.reflect.NBTType;
+import com.divisionind.bprm.nms.reflect.NMS;
 import com.divisionind.bprm.nms.reflect.NMSClass;
 import com.divisionind.bprm.nms.reflect.NMSMethod;
 import org.bukkit.inventory.ItemStack;
@@ -32,7 +33,7 @@ public class NMSItemStack extends NBTMap {
 
     public NMSItemStack(ItemStack item)
             throws InvocationTargetException, IllegalAccessException, InstantiationException, NoSuchMethodException {
-        this(item, NMSMethod.asNMSCopy.getMethod().invoke(null, item));
+        this(item, NMSMethod.asNMSCopy.call(item));
     }
 
     private NMSItemStack(ItemStack item, Object craftItemStack)
@@ -43,7 +44,7 @@ public class NMSItemStack extends NBTMap {
     }
 
     public ItemStack getModifiedItem() throws InvocationTargetException, IllegalAccessException {
-        return (ItemStack) NMSMethod.asBukkitCopy.getMethod().invoke(null, craftItemStack);
+        return (ItemStack) NMSMethod.asBukkitCopy.call(craftItemStack);
     }
 
     public ItemStack getItem() {
@@ -56,15 +57,70 @@ public class NMSItemStack extends NBTMap {
 
     private static Object getNBTTagCompound(Object nmsItemStack)
             throws InvocationTargetException, IllegalAccessException, InstantiationException, NoSuchMethodException {
-        Object nbtCompound = NMSMethod.getTag.getMethod().invoke(nmsItemStack);
+        Object nbtCompound = NMSMethod.getTag.call(nmsItemStack);
         if (nbtCompound == null) {
             nbtCompound = NMSClass.NBTTagCompound.getClazz().getDeclaredConstructor().newInstance();
-            NMSMethod.setTag.getMethod().invoke(nmsItemStack, nbtCompound);
+            NMSMethod.setTag.call(nmsItemStack, nbtCompound);
         }
         return nbtCompound;
     }
 
 
+    /**
+     * Saves the entire item (material, amount and tag) to an NBT compound, the same way Minecraft stores it.
+     *
+     * @param item item to save
+     * @return compound representing the item
+     */
+    public static NBTMap saveToNBT(ItemStack item)
+            throws InvocationTargetException, IllegalAccessException, InstantiationException, NoSuchMethodException {
+        Object nmsItem = NMSMethod.asNMSCopy.call(item);
+        NBTMap map = new NBTMap();
+        NMSMethod.saveItem.call(nmsItem, map.getTagCompound());
+        return map;
+    }
+
+    /**
+     * Creates an item from a compound created with {@link #saveToNBT(ItemStack)}.
+     *
+     * @param map compound representing the item
+     * @return the item
+     */
+    public static ItemStack loadFromNBT(NBTMap map) throws InvocationTargetException, IllegalAccessException {
+        Object nmsItem = NMSMethod.createItem.call(map.getTagCompound());
+        return (ItemStack) NMSMethod.asBukkitCopy.call(nmsItem);
+    }
+
+    /**
+     * @return true if {@link #upgrade(NBTMap, int, int)} can be used on this server
+     */
+    public static boolean isUpgradeSupported() {
+        return NMS.DATA_FIXER != null;
+    }
+
+    /**
+     * Runs a compound created with {@link #saveToNBT(ItemStack)} through Minecraft's data fixers, the same way the
+     * items in a chunk saved by an older version are upgraded.
+     *
+     * @param map compound representing the item
+     * @param fromVersion data version of the server the compound was saved by
+     * @param toVersion data version of this server
+     * @return compound representing the item in this version
+     */
+    public static NBTMap upgrade(NBTMap map, int fromVersion, int toVersion)
+            throws InvocationTargetException, IllegalAccessException {
+        Object dynamic;
+        try {
+            dynamic = NMS.Dynamic_new.invokeExact(NMS.NBT_OPS, map.getTagCompound());
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+
+        Object upgraded = NMSMethod.updateData.call(NMS.DATA_FIXER, NMS.ITEM_STACK_TYPE, dynamic, fromVersion,
+                toVersion);
+        return new NBTMap(NMS.Dynamic_getValue.invoke(upgraded));
+    }
+
     public static ItemStack setNBTOnce(ItemStack item, NBTType type, String key, Object value)
             throws IllegalAccessException, InvocationTargetException, InstantiationException, NoSuchMethodException {
         NMSItemStack nmsItem = new NMSItemStack(item);
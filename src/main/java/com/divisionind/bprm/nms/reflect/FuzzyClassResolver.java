@@ -19,22 +19,33 @@
 package com.divisionind.bprm.nms.reflect;
 
 import com.divisionind.bprm.exceptions.FuzzyClassLookupException;
-import io.netty.util.internal.ConcurrentSet;
 import org.bukkit.Bukkit;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.net.URISyntaxException;
-import java.util.Set;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
+/**
+ * Finds classes in the MC server jar by their simple name. The jar is only read once, the resulting index (simple name
+ * to full names) is saved to the index cache (see {@link #setIndexCache(File)}) and reused for as long as the path, size
+ * and modification time of the jar stay the same. Those are only file metadata, so a cache hit does not read the jar at
+ * all (hashing it would read more than just listing its entries does).
+ */
 public class FuzzyClassResolver {
 
-    private final Set<String> bukkitClasses;
+    private static final int INDEX_VERSION = 2; // 2 dropped the checksum of the whole jar
+
+    private static File indexCache;
+
+    private final Map<String, List<String>> bukkitClasses = new HashMap<>();
+    private boolean fromCache;
 
     public FuzzyClassResolver() throws FuzzyClassLookupException {
         File serverJarFile;
-        ZipFile serverZip;
 
         try {
             serverJarFile = getServerJar();
@@ -46,41 +57,97 @@ public class FuzzyClassResolver {
         if (!serverJarFile.exists())
             throw new FuzzyClassLookupException(String.format("Expected MC server jar at: %s but it wasn't there.", serverJarFile.getAbsolutePath()));
 
-        // treat it as a zip and build a map of entries
-        try {
-            serverZip = new ZipFile(serverJarFile);
-        } catch (IOException e) {
-            throw new FuzzyClassLookupException("Failed to load server jar.", e);
+        String path = serverJarFile.getAbsolutePath();
+        long size = serverJarFile.length();
+        long modified = serverJarFile.lastModified();
+
+        List<String> classes = readIndex(path, size, modified);
+        fromCache = classes != null;
+        if (classes == null) {
+            classes = readJar(serverJarFile);
+            writeIndex(path, size, modified, classes);
+        }
+
+        for (String clazz : classes) {
+            bukkitClasses.computeIfAbsent(simpleName(clazz), k -> new ArrayList<>(1)).add(clazz);
         }
+    }
+
+    /**
+     * @param indexCache file to keep the class index in between restarts or null to not cache it
+     */
+    public static void setIndexCache(File indexCache) {
+        FuzzyClassResolver.indexCache = indexCache;
+    }
 
-        bukkitClasses = new ConcurrentSet<>();
-        serverZip.stream().parallel().forEach(zipEntry -> {
-            String name = zipEntry.getName();
+    private static List<String> readJar(File serverJarFile) throws FuzzyClassLookupException {
+        List<String> classes = new ArrayList<>();
 
-            if (name.endsWith(".class") && !name.contains("$")) {
-                name = name.replace('/', '.');
-                bukkitClasses.add(name.substring(0, name.length() - 6));
+        // treat it as a zip and list the entries
+        try (ZipFile serverZip = new ZipFile(serverJarFile)) {
+            Enumeration<? extends ZipEntry> entries = serverZip.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+
+                if (name.endsWith(".class") && !name.contains("$")) {
+                    name = name.replace('/', '.');
+                    classes.add(name.substring(0, name.length() - 6));
+                }
             }
-        });
+        } catch (IOException e) {
+            throw new FuzzyClassLookupException("Failed to load server jar.", e);
+        }
 
-        // cleanup
-        try {
-            serverZip.close();
+        return classes;
+    }
+
+    /**
+     * @return the cached classes or null if there is no up to date cache
+     */
+    private static List<String> readIndex(String path, long size, long modified) {
+        if (indexCache == null || !indexCache.exists())
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexCache)))) {
+            if (in.readInt() != INDEX_VERSION || !in.readUTF().equals(path) || in.readLong() != size
+                    || in.readLong() != modified)
+                return null;
+
+            int count = in.readInt();
+            List<String> classes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) classes.add(in.readUTF());
+            return classes;
         } catch (IOException e) {
-            throw new FuzzyClassLookupException("A problem occurred closing the server jar resource.", e);
+            // corrupt, it will just be rebuilt
+            return null;
         }
     }
 
-    private boolean namesMatch(String path, String name) {
-        String pathName;
+    private static void writeIndex(String path, long size, long modified, List<String> classes) {
+        if (indexCache == null)
+            return;
 
-        if (path.contains(".")) {
-            String[] parts = path.split("\\.");
-            pathName = parts[parts.length - 1];
-        } else
-            pathName = path;
+        File temp = new File(indexCache.getParentFile(), indexCache.getName() + ".tmp");
+        try {
+            indexCache.getParentFile().mkdirs();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(INDEX_VERSION);
+                out.writeUTF(path);
+                out.writeLong(size);
+                out.writeLong(modified);
+                out.writeInt(classes.size());
+                for (String clazz : classes) out.writeUTF(clazz);
+            }
 
-        return pathName.equals(name);
+            Files.move(temp.toPath(), indexCache.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // not being able to cache it only costs time on the next start
+            Bukkit.getLogger().warning("Failed to save the server class index: " + e.getMessage());
+        }
+    }
+
+    private static String simpleName(String path) {
+        return path.substring(path.lastIndexOf('.') + 1);
     }
 
     /**
@@ -92,10 +159,9 @@ public class FuzzyClassResolver {
      * @throws FuzzyClassLookupException if the class could not be found
      */
     public String lookup(String name) throws FuzzyClassLookupException {
-        for (String clazz : bukkitClasses) {
-            if (namesMatch(clazz, name))
-                return clazz;
-        }
+        List<String> candidates = bukkitClasses.get(name);
+        if (candidates != null)
+            return candidates.get(0);
 
         throw new FuzzyClassLookupException(String.format("Failed to find class by name %s. Server has changed too significantly.", name));
     }
@@ -110,14 +176,24 @@ public class FuzzyClassResolver {
      * @throws FuzzyClassLookupException if the class could not be found
      */
     public String lookup(String name, String partialPath) throws FuzzyClassLookupException {
-        for (String clazz : bukkitClasses) {
-            if (namesMatch(clazz, name) && clazz.contains(partialPath))
-                return clazz;
+        List<String> candidates = bukkitClasses.get(name);
+        if (candidates != null) {
+            for (String clazz : candidates) {
+                if (clazz.contains(partialPath))
+                    return clazz;
+            }
         }
 
         return lookup(name);
     }
 
+    /**
+     * @return true if the index was loaded from the cache rather than the server jar
+     */
+    public boolean isFromCache() {
+        return fromCache;
+    }
+
     private static File getServerJar() throws URISyntaxException {
         return new File(Bukkit.class.getProtectionDomain().getCodeSource().getLocation().toURI().getPath());
     }
@@ -0,0 +1,191 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.nms.reflect;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Compiled getters and setters for NBTTagCompound values. These are generated once at {@link NMS#initialize()}
+ * with the {@link LambdaMetafactory} so that reading or writing NBT is a plain interface call instead of a
+ * {@link Method#invoke(Object, Object...)} (no boxing, varargs arrays or access checks).
+ *
+ * If an accessor can not be generated on some unknown server version, it falls back to invoking the reflected method.
+ */
+public class NBTAccessors {
+
+    public static IntGetter INT_GETTER;
+    public static IntSetter INT_SETTER;
+    public static LongGetter LONG_GETTER;
+    public static LongSetter LONG_SETTER;
+    public static ByteGetter BYTE_GETTER;
+    public static ByteSetter BYTE_SETTER;
+    public static ShortGetter SHORT_GETTER;
+    public static ShortSetter SHORT_SETTER;
+    public static FloatGetter FLOAT_GETTER;
+    public static FloatSetter FLOAT_SETTER;
+    public static DoubleGetter DOUBLE_GETTER;
+    public static DoubleSetter DOUBLE_SETTER;
+    public static BooleanGetter BOOLEAN_GETTER;
+    public static BooleanSetter BOOLEAN_SETTER;
+
+    static void init() {
+        Method intGet = NBTType.INT.getGet(), intSet = NBTType.INT.getSet();
+        INT_GETTER = compile(IntGetter.class, intGet, (tag, key) -> (int) intGet.invoke(tag, key));
+        INT_SETTER = compile(IntSetter.class, intSet, (tag, key, value) -> intSet.invoke(tag, key, value));
+
+        Method longGet = NBTType.LONG.getGet(), longSet = NBTType.LONG.getSet();
+        LONG_GETTER = compile(LongGetter.class, longGet, (tag, key) -> (long) longGet.invoke(tag, key));
+        LONG_SETTER = compile(LongSetter.class, longSet, (tag, key, value) -> longSet.invoke(tag, key, value));
+
+        Method byteGet = NBTType.BYTE.getGet(), byteSet = NBTType.BYTE.getSet();
+        BYTE_GETTER = compile(ByteGetter.class, byteGet, (tag, key) -> (byte) byteGet.invoke(tag, key));
+        BYTE_SETTER = compile(ByteSetter.class, byteSet, (tag, key, value) -> byteSet.invoke(tag, key, value));
+
+        Method shortGet = NBTType.SHORT.getGet(), shortSet = NBTType.SHORT.getSet();
+        SHORT_GETTER = compile(ShortGetter.class, shortGet, (tag, key) -> (short) shortGet.invoke(tag, key));
+        SHORT_SETTER = compile(ShortSetter.class, shortSet, (tag, key, value) -> shortSet.invoke(tag, key, value));
+
+        Method floatGet = NBTType.FLOAT.getGet(), floatSet = NBTType.FLOAT.getSet();
+        FLOAT_GETTER = compile(FloatGetter.class, floatGet, (tag, key) -> (float) floatGet.invoke(tag, key));
+        FLOAT_SETTER = compile(FloatSetter.class, floatSet, (tag, key, value) -> floatSet.invoke(tag, key, value));
+
+        Method doubleGet = NBTType.DOUBLE.getGet(), doubleSet = NBTType.DOUBLE.getSet();
+        DOUBLE_GETTER = compile(DoubleGetter.class, doubleGet, (tag, key) -> (double) doubleGet.invoke(tag, key));
+        DOUBLE_SETTER = compile(DoubleSetter.class, doubleSet, (tag, key, value) -> doubleSet.invoke(tag, key, value));
+
+        Method booleanGet = NBTType.BOOLEAN.getGet(), booleanSet = NBTType.BOOLEAN.getSet();
+        BOOLEAN_GETTER = compile(BooleanGetter.class, booleanGet, (tag, key) -> (boolean) booleanGet.invoke(tag, key));
+        BOOLEAN_SETTER = compile(BooleanSetter.class, booleanSet, (tag, key, value) -> booleanSet.invoke(tag, key, value));
+    }
+
+    /**
+     * Generates an implementation of the functional interface accessorType that directly calls the target method.
+     *
+     * @param accessorType functional interface, the first parameter of its method is the receiver of target
+     * @param target method to call
+     * @param fallback implementation to use should generation fail (e.g. one that uses reflection)
+     * @return the generated accessor or fallback
+     */
+    static <T> T compile(Class<T> accessorType, Method target, T fallback) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle impl = lookup.unreflect(target);
+            Method sam = accessorType.getMethods()[0];
+            MethodType samType = MethodType.methodType(sam.getReturnType(), sam.getParameterTypes());
+
+            CallSite site = LambdaMetafactory.metafactory(lookup, sam.getName(), MethodType.methodType(accessorType),
+                    samType, impl, instantiatedType(samType, impl.type()));
+            return accessorType.cast(site.getTarget().invoke());
+        } catch (Throwable t) {
+            return fallback;
+        }
+    }
+
+    /**
+     * The metafactory only specializes reference types, so primitives in implType that the functional interface
+     * passes around as Object (see {@link ObjectGetter}) must be instantiated as their wrapper class.
+     */
+    private static MethodType instantiatedType(MethodType samType, MethodType implType) {
+        MethodType type = implType;
+
+        for (int i = 1; i < implType.parameterCount(); i++) {
+            if (!samType.parameterType(i).isPrimitive())
+                type = type.changeParameterType(i, type.wrap().parameterType(i));
+        }
+
+        if (samType.returnType().equals(void.class)) {
+            type = type.changeReturnType(void.class);
+        } else
+        if (!samType.returnType().isPrimitive()) {
+            type = type.changeReturnType(type.wrap().returnType());
+        }
+
+        return type;
+    }
+
+    public interface ObjectGetter {
+        Object get(Object tag, String key) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    public interface ObjectSetter {
+        void set(Object tag, String key, Object value) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    public interface IntGetter {
+        int get(Object tag, String key) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    public interface IntSetter {
+        void set(Object tag, String key, int value) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    public interface LongGetter {
+        long get(Object tag, String key) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    public interface LongSetter {
+        void set(Object tag, String key, long value) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    public interface ByteGetter {
+        byte get(Object tag, String key) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    public interface ByteSetter {
+        void set(Object tag, String key, byte value) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    public interface ShortGetter {
+        short get(Object tag, String key) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    public interface ShortSetter {
+        void set(Object tag, String key, short value) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    public interface FloatGetter {
+        float get(Object tag, String key) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    public interface FloatSetter {
+        void set(Object tag, String key, float value) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    public interface DoubleGetter {
+        double get(Object tag, String key) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    public interface DoubleSetter {
+        void set(Object tag, String key, double value) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    public interface BooleanGetter {
+        boolean get(Object tag, String key) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    public interface BooleanSetter {
+        void set(Object tag, String key, boolean value) throws InvocationTargetException, IllegalAccessException;
+    }
+}
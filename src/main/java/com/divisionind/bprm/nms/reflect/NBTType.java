@@ -42,6 +42,8 @@ public enum NBTType {
     private byte internalId;
     private Method set;
     private Method get;
+    private NBTAccessors.ObjectSetter setter;
+    private NBTAccessors.ObjectGetter getter;
 
     NBTType(String type, Class classType, int internalId) {
         this.type = type;
@@ -69,6 +71,20 @@ public enum NBTType {
         return get;
     }
 
+    /**
+     * @return compiled accessor for {@link #getSet()}
+     */
+    public NBTAccessors.ObjectSetter getSetter() {
+        return setter;
+    }
+
+    /**
+     * @return compiled accessor for {@link #getGet()}
+     */
+    public NBTAccessors.ObjectGetter getGetter() {
+        return getter;
+    }
+
     public static NBTType getByInternalId(byte id) {
         for (NBTType type : values()) {
             if (type.internalId == id) return type;
@@ -84,25 +100,46 @@ public enum NBTType {
     }
 
     void init(Class cNBTTagCompound) throws NoSuchMethodException {
-        if (!KnownVersion.v1_18_R1.before()) {
-            set = cNBTTagCompound.getMethod("a", String.class, getClassType());
-            String thing = "p";
-            if (Objects.equals(getType(), "Byte")) thing = "f";
-            if (Objects.equals(getType(), "Short")) thing = "g";
-            if (Objects.equals(getType(), "Int")) thing = "h";
-            if (Objects.equals(getType(), "Long")) thing = "i";
-            if (Objects.equals(getType(), "Float")) thing = "j";
-            if (Objects.equals(getType(), "Double")) thing = "k";
-            if (Objects.equals(getType(), "String")) thing = "l";
-            if (Objects.equals(getType(), "ByteArray")) thing = "m";
-            if (Objects.equals(getType(), "IntArray")) thing = "n";
-            if (Objects.equals(getType(), "Boolean")) thing = "q";
-            if (Objects.equals(getType(), "")) thing = "p";
-            get = cNBTTagCompound.getMethod(thing, String.class);
-        } else {
-            set = cNBTTagCompound.getMethod(String.format("set%s", getType()), String.class, getClassType());
-            get = cNBTTagCompound.getMethod(String.format("get%s", getType()), String.class);
+        // the accessors this resolved to on the last start
+        String[] mapped = NMSMappings.getNBTType(name());
+        boolean fromSnapshot = false;
+        if (mapped != null) {
+            try {
+                set = cNBTTagCompound.getMethod(mapped[0], String.class, getClassType());
+                get = cNBTTagCompound.getMethod(mapped[1], String.class);
+                fromSnapshot = true;
+            } catch (NoSuchMethodException e) {
+                // the snapshot is outdated, resolve them again
+            }
+        }
+        NMSMappings.record(fromSnapshot);
+
+        if (!fromSnapshot) {
+            if (!KnownVersion.v1_18_R1.before()) {
+                set = cNBTTagCompound.getMethod("a", String.class, getClassType());
+                String thing = "p";
+                if (Objects.equals(getType(), "Byte")) thing = "f";
+                if (Objects.equals(getType(), "Short")) thing = "g";
+                if (Objects.equals(getType(), "Int")) thing = "h";
+                if (Objects.equals(getType(), "Long")) thing = "i";
+                if (Objects.equals(getType(), "Float")) thing = "j";
+                if (Objects.equals(getType(), "Double")) thing = "k";
+                if (Objects.equals(getType(), "String")) thing = "l";
+                if (Objects.equals(getType(), "ByteArray")) thing = "m";
+                if (Objects.equals(getType(), "IntArray")) thing = "n";
+                if (Objects.equals(getType(), "Boolean")) thing = "q";
+                if (Objects.equals(getType(), "")) thing = "p";
+                get = cNBTTagCompound.getMethod(thing, String.class);
+            } else {
+                set = cNBTTagCompound.getMethod(String.format("set%s", getType()), String.class, getClassType());
+                get = cNBTTagCompound.getMethod(String.format("get%s", getType()), String.class);
+            }
         }
+
+        Method set = this.set, get = this.get;
+        setter = NBTAccessors.compile(NBTAccessors.ObjectSetter.class, set,
+                (tag, key, value) -> set.invoke(tag, key, value));
+        getter = NBTAccessors.compile(NBTAccessors.ObjectGetter.class, get, (tag, key) -> get.invoke(tag, key));
     }
 
     void setClassType(Class classType) {
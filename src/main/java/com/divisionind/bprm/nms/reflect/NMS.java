@@ -18,18 +18,17 @@
 
 package com.divisionind.bprm.nms.reflect;
 
-import com.divisionind.bprm.FakeBackpackViewer;
-import com.divisionind.bprm.PotentialBackpackItem;
 import com.divisionind.bprm.nms.KnownVersion;
 import com.divisionind.bprm.nms.reflect.ex.NMSLoadException;
-import org.bukkit.entity.HumanEntity;
-import org.bukkit.inventory.Inventory;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Proxy;
-import java.util.ArrayList;
-import java.util.List;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
 
 import static com.divisionind.bprm.nms.KnownVersion.VERSION;
 
@@ -38,37 +37,67 @@ public class NMS {
     public static final String CRAFT = "org.bukkit.craftbukkit." + VERSION + ".";
 
     public static Field TileEntity_world;
+    public static Field CraftItemStack_handle;
     // TODO add NMSField and NMSConstructor managers
 
     public static Object DIMENSION_MANAGER_OVERWORLD;
 
+    // see NMSItemStack#upgrade, these are null before 1.13
+    public static Object DATA_FIXER;
+    public static Object ITEM_STACK_TYPE;
+    public static Object NBT_OPS;
+    public static MethodHandle Dynamic_new;
+    public static Method Dynamic_getValue;
+
+    private static final int REPORT_SLOWEST = 5;
+
+    private static NMSInitializer initializer;
+
     public static List<Exception> initialize() {
-        List<Exception> exceptions = new ArrayList<>();
+        initializer = new NMSInitializer(Runtime.getRuntime().availableProcessors());
+
+        // start from what was resolved on the last start, if this server and plugin build are unchanged
+        NMSMappings.load();
 
-        // initialize classes
+        // initialize classes, they do not depend on anything
+        List<String> classes = new ArrayList<>();
         for (NMSClass nmsClass : NMSClass.values()) {
-            try {
-                nmsClass.init();
-            } catch (Exception e) {
-                exceptions.add(new NMSLoadException("NMSClass: " + nmsClass.name(), e));
-            }
+            String name = "class:" + nmsClass.name();
+            initializer.add(name, () -> {
+                try {
+                    nmsClass.init();
+                } catch (Exception e) {
+                    throw new NMSLoadException("NMSClass: " + nmsClass.name(), e);
+                }
+            });
+            classes.add(name);
         }
 
         // ensure fuzzy-lookup table gets cleaned
-        NMSClass.cleanup();
+        initializer.add("cleanup", NMSClass::cleanup, classes);
 
         // init all getters and setters for the various NBTTag data values
-        NBTType.COMPOUND.setClassType(NMSClass.NBTBase.getClazz());
+        List<String> types = new ArrayList<>();
         for (NBTType type : NBTType.values()) {
-            try {
-                type.init(NMSClass.NBTTagCompound.getClazz());
-            } catch (Exception e) {
-                exceptions.add(new NMSLoadException("NMSType: " + type.name(), e));
-            }
+            String name = "nbt:" + type.name();
+            initializer.add(name, () -> {
+                try {
+                    if (type == NBTType.COMPOUND)
+                        type.setClassType(NMSClass.NBTBase.getClazz());
+
+                    type.init(NMSClass.NBTTagCompound.getClazz());
+                } catch (Exception e) {
+                    throw new NMSLoadException("NMSType: " + type.name(), e);
+                }
+            }, "class:" + NMSClass.NBTTagCompound.name(), "class:" + NMSClass.NBTBase.name());
+            types.add(name);
         }
 
+        // compile the primitive specialized NBT accessors
+        initializer.add("accessors", NBTAccessors::init, types);
+
         // init some methods and classes
-        try {
+        initializer.add("fields", () -> {
             if (KnownVersion.v1_17_R1.before()) {
                 Field overWorldField = NMSClass.DimensionManager.getClazz().getDeclaredField("OVERWORLD");
                 DIMENSION_MANAGER_OVERWORLD = overWorldField.get(null);
@@ -82,68 +111,136 @@ public class NMS {
                 TileEntity_world = NMSClass.TileEntity.getClazz().getDeclaredField("n");
                 TileEntity_world.setAccessible(true);
             }
-        } catch (Exception e) {
-            exceptions.add(e);
+        }, classes);
+
+        // the live NMS item behind a CraftItemStack, lets us read its tag without copying it
+        initializer.add("field:CraftItemStack_handle", () -> {
+            CraftItemStack_handle = NMSClass.CraftItemStack.getClazz().getDeclaredField("handle");
+            CraftItemStack_handle.setAccessible(true);
+        }, "class:" + NMSClass.CraftItemStack.name());
+
+        // initialize methods, the constants of NMSMethod take classes as arguments so the enum itself can only be
+        // initialized once every class is loaded. until then, its constants are only listed by their field names
+        List<String> methods = new ArrayList<>();
+        for (Field field : NMSMethod.class.getDeclaredFields()) {
+            if (!field.isEnumConstant())
+                continue;
+
+            String name = "method:" + field.getName();
+            initializer.add(name, () -> {
+                try {
+                    NMSMethod.valueOf(field.getName()).init();
+                } catch (Exception e) {
+                    throw new NMSLoadException("NMSMethod: " + field.getName(), e);
+                }
+            }, "fields"); // getWorldServer is matched by the type of the overworld key
+            methods.add(name);
         }
 
-        // initialize methods
-        for (NMSMethod nmsMethod : NMSMethod.values()) {
-            try {
-                nmsMethod.init();
-            } catch (Exception e) {
-                exceptions.add(new NMSLoadException("NMSMethod: " + nmsMethod.name(), e));
+        initializer.add("method-cleanup", NMSMethod::cleanup, methods);
+
+        // the server's data fixer and what it needs to upgrade a single item
+        initializer.add("datafixer", () -> {
+            if (KnownVersion.v1_13_R1.before())
+                return;
+
+            DATA_FIXER = NMSMethod.getDataFixer.call();
+
+            // the field names are obfuscated but every type reference knows its own name
+            for (Field field : NMSClass.DataConverterTypes.getClazz().getFields()) {
+                if (!Modifier.isStatic(field.getModifiers()))
+                    continue;
+
+                // invoked through DSL.TypeReference, the references themselves are (inaccessible) lambdas
+                Object type = field.get(null);
+                if ("item_stack".equals(field.getType().getMethod("typeName").invoke(type))) {
+                    ITEM_STACK_TYPE = type;
+                    break;
+                }
             }
-        }
+            if (ITEM_STACK_TYPE == null)
+                throw new NoSuchFieldException("item_stack in " + NMSClass.DataConverterTypes.getPath());
+
+            for (Field field : NMSClass.DynamicOpsNBT.getClazz().getFields()) {
+                if (Modifier.isStatic(field.getModifiers())
+                        && field.getType().equals(NMSClass.DynamicOpsNBT.getClazz()))
+                    NBT_OPS = field.get(null);
+            }
+            if (NBT_OPS == null)
+                throw new NoSuchFieldException("instance of " + NMSClass.DynamicOpsNBT.getPath());
+
+            // Dynamic moved to another package in 1.16, the update method knows where it is
+            Class<?> dynamic = NMSMethod.updateData.getMethod().getParameterTypes()[1];
+            for (Constructor<?> constructor : dynamic.getConstructors()) {
+                // Dynamic(DynamicOps<T> ops, T value)
+                if (constructor.getParameterCount() == 2 && constructor.getParameterTypes()[1].equals(Object.class)) {
+                    MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor);
+                    Dynamic_new = handle.asType(handle.type().generic());
+                }
+            }
+            if (Dynamic_new == null)
+                throw new NoSuchMethodException(dynamic.getName() + ".<init>(DynamicOps, Object)");
+            Dynamic_getValue = dynamic.getMethod("getValue");
+        }, "method:getDataFixer", "method:updateData", "class:" + NMSClass.DataConverterTypes.name(),
+                "class:" + NMSClass.DynamicOpsNBT.name());
 
+        List<Exception> exceptions = initializer.run();
+
+        // only keep what is known to work
+        if (exceptions.isEmpty())
+            NMSMappings.save();
 
         return exceptions;
     }
 
-    public static Object getWorldServer(Object dedicatedServer) throws InvocationTargetException, IllegalAccessException {
-        if (KnownVersion.v1_13_R1.before()) {
-            return NMSMethod.getWorldServer.getMethod().invoke(dedicatedServer, 0);
-        } else {
-            return NMSMethod.getWorldServer.getMethod().invoke(dedicatedServer, NMS.DIMENSION_MANAGER_OVERWORLD);
+    /**
+     * @return how long initialization took, broken down by step, or null if {@link #initialize()} was not called
+     */
+    public static String getInitializationReport() {
+        if (initializer == null)
+            return null;
+
+        List<Map.Entry<String, Long>> timings = initializer.getTimings();
+
+        // totals per kind of step (the prefix before the colon)
+        Map<String, Long> groups = new LinkedHashMap<>();
+        Map<String, Integer> groupSizes = new HashMap<>();
+        for (Map.Entry<String, Long> timing : timings) {
+            int colon = timing.getKey().indexOf(':');
+            String group = colon == -1 ? "other" : timing.getKey().substring(0, colon);
+            groups.merge(group, timing.getValue(), Long::sum);
+            groupSizes.merge(group, 1, Integer::sum);
         }
-    }
 
-    public static FakeBackpackViewer createFakeViewer(PotentialBackpackItem backpack) {
-        return (FakeBackpackViewer) Proxy.newProxyInstance(FakeBackpackViewer.class.getClassLoader(), new Class[] {FakeBackpackViewer.class},
-                (proxy, method, args) -> {
-                    if (method.getName().equals("getOwnerBP"))
-                        return backpack;
-
-                    Class type = method.getReturnType();
-                    if (type.equals(boolean.class)) return false;
-                    if (type.equals(int.class)) return 0;
-                    if (type.equals(double.class)) return 0D;
-                    if (type.equals(float.class)) return 0F;
-                    if (type.equals(long.class)) return 0L;
-                    if (type.equals(short.class)) return (short) 0;
-                    if (type.equals(byte.class)) return (byte) 0;
-
-                    return null;
-                });
-    }
+        StringBuilder report = new StringBuilder(String.format(
+                "NMS initialized in %.1fms (%.1fms of work on %d thread(s)).",
+                initializer.getWallNanos() / 1e6, initializer.getWorkNanos() / 1e6, initializer.getParallelism()));
 
-    public static void removeFakeBackpackViewer(Inventory inv) {
-        List<HumanEntity> viewers = inv.getViewers();
+        for (Map.Entry<String, Long> group : groups.entrySet()) {
+            report.append(String.format(" %s: %d in %.1fms;", group.getKey(), groupSizes.get(group.getKey()),
+                    group.getValue() / 1e6));
+        }
 
-        for (int i = 0; i < viewers.size(); i++) {
-            if (viewers.get(i) instanceof FakeBackpackViewer) {
-                viewers.remove(i);
-                return;
-            }
+        report.append(" Slowest:");
+        for (int i = 0; i < Math.min(REPORT_SLOWEST, timings.size()); i++) {
+            Map.Entry<String, Long> timing = timings.get(i);
+            report.append(String.format(" %s %.1fms", timing.getKey(), timing.getValue() / 1e6));
+            if (i + 1 < Math.min(REPORT_SLOWEST, timings.size())) report.append(',');
         }
+
+        if (NMSMappings.isLoaded()) {
+            report.append(String.format(" Mapping snapshot: %d of %d entries used.", NMSMappings.getUsed(),
+                    NMSMappings.getUsed() + NMSMappings.getMissed()));
+        } else report.append(" Mapping snapshot: none, everything was resolved.");
+
+        return report.toString();
     }
 
-    public static FakeBackpackViewer getBackpackViewer(Inventory inv) {
-        for (HumanEntity ent : inv.getViewers()) {
-            if (ent instanceof FakeBackpackViewer) {
-                return (FakeBackpackViewer) ent;
-            }
+    public static Object getWorldServer(Object dedicatedServer) throws InvocationTargetException, IllegalAccessException {
+        if (KnownVersion.v1_13_R1.before()) {
+            return NMSMethod.getWorldServer.call(dedicatedServer, 0);
+        } else {
+            return NMSMethod.getWorldServer.call(dedicatedServer, NMS.DIMENSION_MANAGER_OVERWORLD);
         }
-
-        return null;
     }
 }
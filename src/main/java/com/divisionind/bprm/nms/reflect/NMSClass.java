@@ -48,7 +48,13 @@ public enum NMSClass {
     WorldServer(SERVER, (v1_18_R1.before() ? "WorldServer" : "level.WorldServer")),
     BlockPosition((v1_18_R1.before() ? SERVER : "net.minecraft.core."), "BlockPosition", v1_17_R1.before()),
     IBlockData((v1_18_R1.before() ? SERVER : "net.minecraft.world.level.block.state."), "IBlockData", v1_17_R1.before()),
-    CraftTileInventoryConverter_Furnace(CRAFT, "inventory.util.CraftTileInventoryConverter$Furnace", v1_17_R1.before());
+    CraftTileInventoryConverter_Furnace(CRAFT, "inventory.util.CraftTileInventoryConverter$Furnace", v1_17_R1.before()),
+    NBTCompressedStreamTools((v1_18_R1.before() ? SERVER : "net.minecraft.nbt."), "NBTCompressedStreamTools"),
+    // used to upgrade items stored by an older version of Minecraft
+    DataConverterRegistry((v1_18_R1.before() ? SERVER : "net.minecraft.util.datafix."), "DataConverterRegistry", v1_13_R1.before()),
+    DataConverterTypes((v1_18_R1.before() ? SERVER : "net.minecraft.util.datafix.fixes."), "DataConverterTypes", v1_13_R1.before()),
+    DynamicOpsNBT((v1_18_R1.before() ? SERVER : "net.minecraft.nbt."), "DynamicOpsNBT", v1_13_R1.before()),
+    DataFixer("com.mojang.datafixers.", "DataFixer", v1_13_R1.before());
 
     private String path;
     private Class clazz;
@@ -69,14 +75,28 @@ public enum NMSClass {
     }
 
     void init() throws ClassNotFoundException, FuzzyClassLookupException {
+        // the class this resolved to on the last start
+        String mapped = path == null ? null : NMSMappings.getClassName(name());
+        if (mapped != null) {
+            try {
+                clazz = load(mapped);
+                path = mapped;
+                NMSMappings.record(true);
+                return;
+            } catch (ClassNotFoundException e) {
+                // the snapshot is outdated, resolve it again
+            }
+        }
+
+        if (path != null)
+            NMSMappings.record(false);
+
         try {
             if (path != null)
-                clazz = Class.forName(path);
+                clazz = load(path);
         } catch (ClassNotFoundException e) {
             // could not resolve class the traditional/fast way, use slow lookup (1.17+)
-            if (classResolver == null) {
-                classResolver = new FuzzyClassResolver();
-            }
+            FuzzyClassResolver classResolver = getClassResolver();
 
             String[] pathParts = path.split("\\.");
             String partialPath;
@@ -87,10 +107,18 @@ public enum NMSClass {
                 partialPath = "org.bukkit.craftbukkit";
 
             path = classResolver.lookup(pathParts[pathParts.length - 1], partialPath); // lookup by class name
-            clazz = Class.forName(path);
+            clazz = load(path);
         }
     }
 
+    /**
+     * Loads without initializing the class. Classes are loaded in parallel and running the static initializers of
+     * server classes from multiple threads at once could deadlock, they get initialized once they are first used.
+     */
+    private static Class load(String path) throws ClassNotFoundException {
+        return Class.forName(path, false, NMSClass.class.getClassLoader());
+    }
+
     public Class getClazz() {
         return clazz;
     }
@@ -101,7 +129,14 @@ public enum NMSClass {
 
     private static FuzzyClassResolver classResolver;
 
-    public static void cleanup() {
+    private static synchronized FuzzyClassResolver getClassResolver() throws FuzzyClassLookupException {
+        if (classResolver == null)
+            classResolver = new FuzzyClassResolver();
+
+        return classResolver;
+    }
+
+    public static synchronized void cleanup() {
         classResolver = null;
     }
 }
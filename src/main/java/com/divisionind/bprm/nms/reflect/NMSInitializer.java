@@ -0,0 +1,163 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.nms.reflect;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs a set of initialization steps with dependencies between them. Every step starts as soon as all of its
+ * dependencies are done, steps that do not depend on each other run in parallel on a fork-join pool. The time each
+ * step took is recorded for the startup report.
+ */
+class NMSInitializer {
+
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private final ForkJoinPool pool;
+    private long wallNanos;
+
+    NMSInitializer(int parallelism) {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+    /**
+     * @param name unique name of the step, also used in the report
+     * @param action what the step does, any exception thrown is collected and reported
+     * @param dependencies names of the steps that have to be done before this one
+     */
+    void add(String name, Action action, Collection<String> dependencies) {
+        steps.put(name, new Step(name, action, dependencies));
+    }
+
+    void add(String name, Action action, String... dependencies) {
+        add(name, action, Arrays.asList(dependencies));
+    }
+
+    /**
+     * Runs all steps and waits for them to finish.
+     *
+     * @return exceptions thrown by steps, in the order the steps were added
+     */
+    List<Exception> run() {
+        long start = System.nanoTime();
+        Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+        for (Step step : steps.values()) schedule(step, futures);
+
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            // steps catch their own exceptions, this is only the pool failing
+        } finally {
+            pool.shutdown();
+        }
+        wallNanos = System.nanoTime() - start;
+
+        List<Exception> exceptions = new ArrayList<>();
+        for (Step step : steps.values()) {
+            if (step.exception != null) exceptions.add(step.exception);
+        }
+
+        return exceptions;
+    }
+
+    private CompletableFuture<Void> schedule(Step step, Map<String, CompletableFuture<Void>> futures) {
+        CompletableFuture<Void> future = futures.get(step.name);
+        if (future != null)
+            return future;
+
+        List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+        for (String dependency : step.dependencies) {
+            Step dependencyStep = steps.get(dependency);
+            if (dependencyStep == null)
+                throw new IllegalStateException("Unknown dependency " + dependency + " of " + step.name);
+
+            dependencies.add(schedule(dependencyStep, futures));
+        }
+
+        future = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture[0]))
+                .thenRunAsync(step::run, pool);
+        futures.put(step.name, future);
+        return future;
+    }
+
+    /**
+     * @return time from start to finish
+     */
+    long getWallNanos() {
+        return wallNanos;
+    }
+
+    /**
+     * @return time of all steps combined
+     */
+    long getWorkNanos() {
+        long total = 0;
+        for (Step step : steps.values()) total += step.nanos;
+        return total;
+    }
+
+    int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * @return names and times of all steps, slowest first
+     */
+    List<Map.Entry<String, Long>> getTimings() {
+        List<Map.Entry<String, Long>> timings = new ArrayList<>();
+        for (Step step : steps.values()) timings.add(new AbstractMap.SimpleImmutableEntry<>(step.name, step.nanos));
+        timings.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        return timings;
+    }
+
+    interface Action {
+        void run() throws Exception;
+    }
+
+    private static class Step {
+        private final String name;
+        private final Action action;
+        private final Collection<String> dependencies;
+        private volatile long nanos;
+        private volatile Exception exception;
+
+        private Step(String name, Action action, Collection<String> dependencies) {
+            this.name = name;
+            this.action = action;
+            this.dependencies = dependencies;
+        }
+
+        private void run() {
+            long start = System.nanoTime();
+            try {
+                action.run();
+            } catch (Exception e) {
+                exception = e;
+            } catch (Error e) {
+                // e.g. a failing static initializer, still let the steps that depend on this one run
+                exception = new ExecutionException(name, e);
+            } finally {
+                nanos = System.nanoTime() - start;
+            }
+        }
+    }
+}
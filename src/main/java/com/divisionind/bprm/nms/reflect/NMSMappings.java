@@ -0,0 +1,275 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.nms.reflect;
+
+import com.divisionind.bprm.nms.KnownVersion;
+import org.bukkit.Bukkit;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Snapshot of what {@link NMS#initialize()} resolved: the class names, the NBT accessor names and the method
+ * signatures. It is saved after an initialization without errors and loaded before the next one, that way the
+ * obfuscated names do not have to be derived again and neither the fuzzy lookups nor the server jar scan are needed.
+ *
+ * The snapshot is only used if the NMS version, the server build and the plugin build are the same as when it was
+ * written. Every entry is still checked when it is used, an entry that does not resolve (or is missing) is resolved the
+ * normal way and the snapshot is written again afterwards.
+ */
+public class NMSMappings {
+
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<>();
+
+    static {
+        for (Class<?> primitive : new Class[] {boolean.class, byte.class, short.class, char.class, int.class,
+                long.class, float.class, double.class, void.class}) PRIMITIVES.put(primitive.getName(), primitive);
+    }
+
+    private static File snapshotFile;
+    private static String pluginBuild;
+
+    // only written by load(), read concurrently during initialization
+    private static final Map<String, String> classes = new HashMap<>();
+    private static final Map<String, String[]> nbtTypes = new HashMap<>();
+    private static final Map<String, MethodMapping> methods = new HashMap<>();
+
+    private static boolean loaded;
+    private static final AtomicInteger used = new AtomicInteger();
+    private static final AtomicInteger missed = new AtomicInteger();
+
+    /**
+     * @param snapshotFile file to keep the snapshot in between restarts or null to always resolve everything
+     * @param pluginBuild build of the plugin, the lookups can change between builds
+     */
+    public static void setSnapshot(File snapshotFile, String pluginBuild) {
+        NMSMappings.snapshotFile = snapshotFile;
+        NMSMappings.pluginBuild = pluginBuild;
+    }
+
+    /**
+     * Loads the snapshot if there is one for this exact server and plugin build.
+     */
+    static void load() {
+        classes.clear();
+        nbtTypes.clear();
+        methods.clear();
+        used.set(0);
+        missed.set(0);
+        loaded = false;
+
+        if (snapshotFile == null || !snapshotFile.exists())
+            return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_VERSION || !in.readUTF().equals(KnownVersion.VERSION)
+                    || !in.readUTF().equals(Bukkit.getVersion()) || !in.readUTF().equals(pluginBuild))
+                return;
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) classes.put(in.readUTF(), in.readUTF());
+
+            count = in.readInt();
+            for (int i = 0; i < count; i++) nbtTypes.put(in.readUTF(), new String[] {in.readUTF(), in.readUTF()});
+
+            count = in.readInt();
+            for (int i = 0; i < count; i++) methods.put(in.readUTF(), MethodMapping.read(in));
+
+            loaded = true;
+        } catch (IOException e) {
+            // corrupt, everything is resolved normally and it gets written again
+            classes.clear();
+            nbtTypes.clear();
+            methods.clear();
+        }
+    }
+
+    /**
+     * Writes a new snapshot, unless the current one was loaded and fully used.
+     */
+    static void save() {
+        if (snapshotFile == null || (loaded && missed.get() == 0))
+            return;
+
+        File temp = new File(snapshotFile.getParentFile(), snapshotFile.getName() + ".tmp");
+        try {
+            snapshotFile.getParentFile().mkdirs();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeUTF(KnownVersion.VERSION);
+                out.writeUTF(Bukkit.getVersion());
+                out.writeUTF(pluginBuild);
+
+                Map<String, String> resolvedClasses = new HashMap<>();
+                for (NMSClass nmsClass : NMSClass.values()) {
+                    if (nmsClass.getClazz() != null)
+                        resolvedClasses.put(nmsClass.name(), nmsClass.getClazz().getName());
+                }
+                out.writeInt(resolvedClasses.size());
+                for (Map.Entry<String, String> entry : resolvedClasses.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue());
+                }
+
+                out.writeInt(NBTType.values().length);
+                for (NBTType type : NBTType.values()) {
+                    out.writeUTF(type.name());
+                    out.writeUTF(type.getSet().getName());
+                    out.writeUTF(type.getGet().getName());
+                }
+
+                out.writeInt(NMSMethod.values().length);
+                for (NMSMethod nmsMethod : NMSMethod.values()) {
+                    out.writeUTF(nmsMethod.name());
+                    MethodMapping.write(out, nmsMethod.getMethod());
+                }
+            }
+
+            Files.move(temp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // not being able to save it only costs time on the next start
+            Bukkit.getLogger().warning("Failed to save the NMS mapping snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the class name the snapshot has for the {@link NMSClass} or null if there is none
+     */
+    static String getClassName(String nmsClass) {
+        return classes.get(nmsClass);
+    }
+
+    /**
+     * @return the setter and getter name the snapshot has for the {@link NBTType} or null if there are none
+     */
+    static String[] getNBTType(String type) {
+        return nbtTypes.get(type);
+    }
+
+    /**
+     * @return the method the snapshot has for the {@link NMSMethod} or null if there is none
+     */
+    static MethodMapping getMethod(String nmsMethod) {
+        return methods.get(nmsMethod);
+    }
+
+    /**
+     * Counts an entry of the snapshot as used or missed (not in the snapshot or no longer resolving). Only counted
+     * while a snapshot is loaded.
+     */
+    static void record(boolean hit) {
+        if (loaded) (hit ? used : missed).incrementAndGet();
+    }
+
+    /**
+     * @return whether the last initialization started from a snapshot
+     */
+    public static boolean isLoaded() {
+        return loaded;
+    }
+
+    public static int getUsed() {
+        return used.get();
+    }
+
+    public static int getMissed() {
+        return missed.get();
+    }
+
+    private static Class<?> type(String name) throws ClassNotFoundException {
+        Class<?> primitive = PRIMITIVES.get(name);
+        return primitive != null ? primitive : Class.forName(name, false, NMSMappings.class.getClassLoader());
+    }
+
+    /**
+     * A method signature as it was resolved, a method that was not needed in this version is kept as absent.
+     */
+    static class MethodMapping {
+        private final boolean present;
+        private final String owner;
+        private final String name;
+        private final String[] parameters;
+        private final String returnType;
+        private final boolean accessible;
+
+        private MethodMapping(boolean present, String owner, String name, String[] parameters, String returnType,
+                              boolean accessible) {
+            this.present = present;
+            this.owner = owner;
+            this.name = name;
+            this.parameters = parameters;
+            this.returnType = returnType;
+            this.accessible = accessible;
+        }
+
+        /**
+         * @return the method or null if it was not needed
+         * @throws ReflectiveOperationException if the method no longer matches the snapshot
+         */
+        Method resolve() throws ReflectiveOperationException {
+            if (!present)
+                return null;
+
+            Class<?>[] parameterTypes = new Class[parameters.length];
+            for (int i = 0; i < parameters.length; i++) parameterTypes[i] = type(parameters[i]);
+
+            Method method = type(owner).getDeclaredMethod(name, parameterTypes);
+            if (!method.getReturnType().getName().equals(returnType))
+                throw new NoSuchMethodException(String.format("Return type of %s.%s changed.", owner, name));
+
+            if (accessible)
+                method.setAccessible(true);
+
+            return method;
+        }
+
+        @SuppressWarnings("deprecation") // isAccessible() is what we want, whether setAccessible() was called
+        private static void write(DataOutput out, Method method) throws IOException {
+            out.writeBoolean(method != null);
+            if (method == null)
+                return;
+
+            out.writeUTF(method.getDeclaringClass().getName());
+            out.writeUTF(method.getName());
+            out.writeInt(method.getParameterCount());
+            for (Class<?> parameter : method.getParameterTypes()) out.writeUTF(parameter.getName());
+            out.writeUTF(method.getReturnType().getName());
+            out.writeBoolean(method.isAccessible());
+        }
+
+        private static MethodMapping read(DataInput in) throws IOException {
+            if (!in.readBoolean())
+                return new MethodMapping(false, null, null, null, null, false);
+
+            String owner = in.readUTF();
+            String name = in.readUTF();
+            String[] parameters = new String[in.readInt()];
+            for (int i = 0; i < parameters.length; i++) parameters[i] = in.readUTF();
+
+            return new MethodMapping(true, owner, name, parameters, in.readUTF(), in.readBoolean());
+        }
+    }
+}
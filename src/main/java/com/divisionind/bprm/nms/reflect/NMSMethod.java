@@ -20,7 +20,17 @@ package com.divisionind.bprm.nms.reflect;
 
 import org.bukkit.inventory.ItemStack;
 
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.divisionind.bprm.nms.reflect.NMSClass.*;
 import static com.divisionind.bprm.nms.KnownVersion.*;
@@ -66,9 +76,40 @@ public enum NMSMethod {
     getPosition(() ->   v1_17_R1.before() ? null : TileEntity.getClazz().getMethod(v1_18_R1.before() ? "getPosition" : "p")),
     getBlock(() ->      v1_17_R1.before() ? null : TileEntity.getClazz().getMethod(v1_18_R1.before() ? "getBlock" : "q")),
     getTileEntity(() -> v1_17_R1.before() ? null : CraftTileInventoryConverter_Furnace
-            .getClazz().getMethod("getTileEntity"));
+            .getClazz().getMethod("getTileEntity")),
+    // the following are matched by signature because their obfuscated names change so often
+    saveItem(() ->      v1_13_R1.before() ? null : fuzzyMethodLookup(ItemStack.getClazz(), false,
+            (method) -> !Modifier.isStatic(method.getModifiers()) && method.getParameterCount() == 1 &&
+                    method.getParameterTypes()[0].equals(NBTTagCompound.getClazz()) &&
+                    method.getReturnType().equals(NBTTagCompound.getClazz()) ? 0 : 1)),
+    createItem(() ->    v1_13_R1.before() ? null : fuzzyMethodLookup(ItemStack.getClazz(), false,
+            (method) -> Modifier.isStatic(method.getModifiers()) && method.getParameterCount() == 1 &&
+                    method.getParameterTypes()[0].equals(NBTTagCompound.getClazz()) &&
+                    method.getReturnType().equals(ItemStack.getClazz()) ? 0 : 1)),
+    writeCompound(() -> v1_13_R1.before() ? null : fuzzyMethodLookup(NBTCompressedStreamTools.getClazz(), false,
+            (method) -> Modifier.isStatic(method.getModifiers()) && method.getParameterCount() == 2 &&
+                    method.getParameterTypes()[0].equals(NBTTagCompound.getClazz()) &&
+                    method.getParameterTypes()[1].equals(DataOutput.class) ? 0 : 1)),
+    readCompound(() ->  v1_13_R1.before() ? null : fuzzyMethodLookup(NBTCompressedStreamTools.getClazz(), false,
+            (method) -> Modifier.isStatic(method.getModifiers()) && method.getParameterCount() == 1 &&
+                    (method.getParameterTypes()[0].equals(DataInput.class) ||
+                            method.getParameterTypes()[0].equals(DataInputStream.class)) &&
+                    method.getReturnType().equals(NBTTagCompound.getClazz()) ? 0 : 1)),
+    fuelTime(() ->      v1_14_R1.before() ? null : accessible(fuzzyMethodLookup(TileEntityFurnace.getClazz(), true,
+            (method) -> !Modifier.isStatic(method.getModifiers()) && method.getParameterCount() == 1 &&
+                    method.getParameterTypes()[0].equals(ItemStack.getClazz()) &&
+                    method.getReturnType().equals(int.class) ? 0 : 1))),
+    getDataFixer(() -> v1_13_R1.before() ? null : fuzzyMethodLookup(DataConverterRegistry.getClazz(), false,
+            (method) -> Modifier.isStatic(method.getModifiers()) && method.getParameterCount() == 0 &&
+                    method.getReturnType().equals(DataFixer.getClazz()) ? 0 : 1)),
+    // DataFixer#update(TypeReference, Dynamic, int, int), this is part of Mojang's (unobfuscated) DataFixerUpper
+    updateData(() ->    v1_13_R1.before() ? null : fuzzyMethodLookup(DataFixer.getClazz(), false,
+            (method) -> method.getName().equals("update") && method.getParameterCount() == 4 &&
+                    method.getParameterTypes()[2].equals(int.class) &&
+                    method.getParameterTypes()[3].equals(int.class) ? 0 : 1));
 
     private Method method;
+    private MethodHandle handle;
     private MethodInitializer methodInitializer;
     private boolean methodPrivate;
 
@@ -91,10 +132,28 @@ public enum NMSMethod {
     }
 
     void init() throws NoSuchMethodException {
-        this.method = methodInitializer.init();
+        // the method this resolved to on the last start, skips the fuzzy lookups
+        NMSMappings.MethodMapping mapping = NMSMappings.getMethod(name());
+        boolean fromSnapshot = false;
+        if (mapping != null) {
+            try {
+                this.method = mapping.resolve();
+                fromSnapshot = true;
+            } catch (ReflectiveOperationException e) {
+                // the snapshot is outdated, resolve it again
+            }
+        }
+        NMSMappings.record(fromSnapshot);
+
+        if (!fromSnapshot) {
+            this.method = methodInitializer.init();
 
-        if (methodPrivate)
-            this.method.setAccessible(true);
+            if (methodPrivate)
+                this.method.setAccessible(true);
+        }
+
+        if (method != null)
+            this.handle = compile(method);
 
         this.methodInitializer = null; // so the initializer can be garbage collected, we will never need it again
     }
@@ -103,9 +162,101 @@ public enum NMSMethod {
         return method;
     }
 
+    /**
+     * @return a handle to the method with all parameters and the return type generified to Object, this is null if
+     * the handle could not be created (in which case {@link #call(Object)} and friends fall back to reflection)
+     */
+    public MethodHandle getHandle() {
+        return handle;
+    }
+
+    /*
+     * Calls the method through its compiled handle. Arguments are passed like they are to a MethodHandle, so for
+     * instance methods the first argument is the instance the method is being called on.
+     */
+
+    public Object call() throws InvocationTargetException, IllegalAccessException {
+        if (handle == null) return reflect();
+        try {
+            return handle.invokeExact();
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    public Object call(Object a) throws InvocationTargetException, IllegalAccessException {
+        if (handle == null) return reflect(a);
+        try {
+            return handle.invokeExact(a);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    public Object call(Object a, Object b) throws InvocationTargetException, IllegalAccessException {
+        if (handle == null) return reflect(a, b);
+        try {
+            return handle.invokeExact(a, b);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    public Object call(Object a, Object b, Object c) throws InvocationTargetException, IllegalAccessException {
+        if (handle == null) return reflect(a, b, c);
+        try {
+            return handle.invokeExact(a, b, c);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    public Object call(Object a, Object b, Object c, Object d)
+            throws InvocationTargetException, IllegalAccessException {
+        if (handle == null) return reflect(a, b, c, d);
+        try {
+            return handle.invokeExact(a, b, c, d);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    public Object call(Object a, Object b, Object c, Object d, Object e)
+            throws InvocationTargetException, IllegalAccessException {
+        if (handle == null) return reflect(a, b, c, d, e);
+        try {
+            return handle.invokeExact(a, b, c, d, e);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    private Object reflect(Object... args) throws InvocationTargetException, IllegalAccessException {
+        if (Modifier.isStatic(method.getModifiers()))
+            return method.invoke(null, args);
+
+        return method.invoke(args[0], Arrays.copyOfRange(args, 1, args.length));
+    }
+
+    private static MethodHandle compile(Method method) {
+        try {
+            MethodHandle handle = MethodHandles.lookup().unreflect(method);
+            return handle.asType(handle.type().generic());
+        } catch (IllegalAccessException e) {
+            // e.g. a public method inherited from a non-public class, fallback to reflection
+            return null;
+        }
+    }
+
+    // several lookups scan the same classes, each scan copies the whole method table so only do it once per class
+    private static final Map<Class<?>, Method[]> METHODS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Method[]> DECLARED_METHODS = new ConcurrentHashMap<>();
+
     private static Method fuzzyMethodLookup(Class<?> clazz, boolean declared, Comparable<Method> condition)
             throws NoSuchMethodException {
-        for (Method method : (declared ? clazz.getDeclaredMethods() : clazz.getMethods())) {
+        Method[] methods = declared ? DECLARED_METHODS.computeIfAbsent(clazz, Class::getDeclaredMethods) :
+                METHODS.computeIfAbsent(clazz, Class::getMethods);
+        for (Method method : methods) {
             if (condition.compareTo(method) == 0)
                 return method;
         }
@@ -114,6 +265,19 @@ public enum NMSMethod {
                 clazz.getName()));
     }
 
+    /**
+     * Drops the method tables cached by the fuzzy lookups, they are not needed after initialization.
+     */
+    static void cleanup() {
+        METHODS.clear();
+        DECLARED_METHODS.clear();
+    }
+
+    private static Method accessible(Method method) {
+        method.setAccessible(true);
+        return method;
+    }
+
     private interface MethodInitializer {
         Method init() throws NoSuchMethodException;
     }
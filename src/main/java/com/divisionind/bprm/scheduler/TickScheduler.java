@@ -0,0 +1,128 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.scheduler;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+
+/**
+ * Calls {@link TickSubscriber}s every game tick. The underlying bukkit task only exists while there is at least one
+ * subscriber, so nothing runs on servers that are not using anything that needs ticking (e.g. virtual furnaces).
+ *
+ * Subscribers should unsubscribe themselves as soon as they run out of work.
+ */
+public class TickScheduler {
+
+    private static final List<TickSubscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private static Plugin plugin;
+    private static BukkitTask task;
+    private static long tick;
+
+    public static synchronized void initialize(Plugin plugin) {
+        TickScheduler.plugin = plugin;
+        if (!subscribers.isEmpty()) start();
+    }
+
+    /**
+     * Stops ticking and removes all subscribers.
+     */
+    public static synchronized void shutdown() {
+        subscribers.clear();
+        stop();
+    }
+
+    /**
+     * @param subscriber subscriber to call every tick
+     * @return false if it was already subscribed
+     */
+    public static synchronized boolean subscribe(TickSubscriber subscriber) {
+        if (subscribers.contains(subscriber))
+            return false;
+
+        subscribers.add(subscriber);
+        if (task == null) start();
+        return true;
+    }
+
+    /**
+     * May be called from within {@link TickSubscriber#onTick(long)}.
+     *
+     * @param subscriber subscriber to remove
+     * @return false if it was not subscribed
+     */
+    public static synchronized boolean unsubscribe(TickSubscriber subscriber) {
+        if (!subscribers.remove(subscriber))
+            return false;
+
+        if (subscribers.isEmpty()) stop();
+        return true;
+    }
+
+    public static boolean isSubscribed(TickSubscriber subscriber) {
+        return subscribers.contains(subscriber);
+    }
+
+    public static boolean isRunning() {
+        return task != null;
+    }
+
+    /**
+     * @return number of ticks the scheduler has run for (does not advance while there is nothing to tick)
+     */
+    public static long getCurrentTick() {
+        return tick;
+    }
+
+    public static int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private static void start() {
+        // subscriptions made before the plugin is enabled start when initialize is called
+        if (plugin == null || !plugin.isEnabled())
+            return;
+
+        task = Bukkit.getScheduler().runTaskTimer(plugin, TickScheduler::tick, 1L, 1L);
+    }
+
+    private static void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private static void tick() {
+        long current = ++tick;
+        for (TickSubscriber subscriber : subscribers) {
+            try {
+                subscriber.onTick(current);
+            } catch (Exception e) {
+                // one broken subscriber should not stop the others from ticking
+                plugin.getLogger().log(Level.SEVERE, "Error ticking " + subscriber.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.storage;
+
+import com.divisionind.bprm.BackpackProbe;
+import com.divisionind.bprm.PotentialBackpackItem;
+import com.divisionind.bprm.scheduler.TickScheduler;
+import com.divisionind.bprm.scheduler.TickSubscriber;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.plugin.Plugin;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Saves the contents of closed storage backpacks off the main thread.
+ *
+ * When a backpack is closed, its contents are copied on the main thread and encoded (and compressed) on a worker
+ * thread. Finished saves are picked up by the main thread every tick and applied to the player's backpack, which is
+ * found by its id. The workers never touch the server, so a save still encoding when the plugin is disabled is simply
+ * flushed by {@link #shutdown()}. Every save gets a per-player sequence number, only the latest save of a player is
+ * ever applied. Anything that could read or move the
+ * backpack before then (reopening it, inventory clicks, leaving) must call {@link #flush(UUID)} first, which waits for
+ * the pending save and applies it immediately.
+ */
+public class AsyncBackpackSaver {
+
+    private static final Map<UUID, PendingSave> pending = new ConcurrentHashMap<>();
+    private static final AtomicLong sequence = new AtomicLong();
+    private static final TickSubscriber APPLIER = tick -> applyCompleted();
+
+    private static Plugin plugin;
+    private static ExecutorService workers;
+    private static boolean enabled = true;
+    private static int threads = 1;
+
+    // statistics
+    private static final AtomicLong saved = new AtomicLong();
+    private static final AtomicLong superseded = new AtomicLong();
+    private static final AtomicLong flushed = new AtomicLong();
+
+    /**
+     * @param enabled whether backpacks should be saved asynchronously
+     * @param threads number of worker threads
+     */
+    public static void configure(boolean enabled, int threads) {
+        AsyncBackpackSaver.enabled = enabled;
+        AsyncBackpackSaver.threads = Math.max(1, threads);
+    }
+
+    public static synchronized void initialize(Plugin plugin) {
+        AsyncBackpackSaver.plugin = plugin;
+        if (workers != null) return;
+
+        AtomicInteger count = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "Backpacks Save Worker #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Applies every pending save and stops the workers.
+     */
+    public static synchronized void shutdown() {
+        for (UUID playerId : pending.keySet()) flush(playerId);
+        TickScheduler.unsubscribe(APPLIER);
+
+        if (workers != null) {
+            workers.shutdown();
+            workers = null;
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled && workers != null;
+    }
+
+    /**
+     * Saves the contents of a storage backpack in the player's chestplate slot. Must be called on the main thread.
+     *
+     * @param player player who closed the backpack
+     * @param backpack the backpack item (as it was when it was opened)
+     * @param contents the contents of the closed inventory
+     * @param title the title of the closed inventory
+     */
+    public static void save(Player player, PotentialBackpackItem backpack, ItemStack[] contents, String title)
+            throws Exception {
+        // copy the items so changes after this point do not end up in the save
+        ItemStack[] snapshot = new ItemStack[contents.length];
+        for (int i = 0; i < contents.length; i++) snapshot[i] = contents[i] == null ? null : contents[i].clone();
+
+        // the save is written to whichever item has this id, so it can not end up in another backpack
+        UUID backpackId = backpack.getBackpackId();
+        if (backpackId == null) {
+            backpackId = backpack.assignBackpackId();
+            player.getInventory().setChestplate(backpack.getModifiedItem());
+        }
+
+        UUID playerId = player.getUniqueId();
+        PendingSave save = new PendingSave(playerId, sequence.incrementAndGet(), backpackId);
+        save.result = workers.submit(() -> InventoryCodec.encode(snapshot, title));
+
+        if (pending.put(playerId, save) != null) superseded.incrementAndGet();
+        TickScheduler.subscribe(APPLIER);
+    }
+
+    private static void applyCompleted() {
+        for (PendingSave save : pending.values()) {
+            if (save.result.isDone()) apply(save);
+        }
+
+        if (pending.isEmpty()) TickScheduler.unsubscribe(APPLIER);
+    }
+
+    /**
+     * Waits for the pending save of a player (if any) and applies it. Must be called on the main thread.
+     *
+     * @param playerId player to flush
+     */
+    public static void flush(UUID playerId) {
+        PendingSave save = pending.get(playerId);
+        if (save != null) {
+            flushed.incrementAndGet();
+            apply(save);
+        }
+    }
+
+    private static void apply(PendingSave save) {
+        // a later close always wins
+        PendingSave latest = pending.get(save.playerId);
+        if (latest == null || latest.sequence != save.sequence || !pending.remove(save.playerId, latest))
+            return;
+
+        Player player = Bukkit.getPlayer(save.playerId);
+        try {
+            byte[] data = save.result.get();
+            if (player == null || !writeTo(player.getInventory(), save, data)) {
+                plugin.getLogger().warning(String.format("Could not find the backpack of %s to save its contents to.",
+                        player == null ? save.playerId : player.getName()));
+                return;
+            }
+
+            saved.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.SEVERE, "Error saving backpack of " + save.playerId, e);
+        }
+    }
+
+    private static boolean writeTo(PlayerInventory inv, PendingSave save, byte[] data) throws Exception {
+        // the backpack is usually still the chestplate
+        PotentialBackpackItem chestplate = match(inv.getChestplate(), save);
+        if (chestplate != null) {
+            chestplate.setData(data);
+            inv.setChestplate(chestplate.getModifiedItem());
+            return true;
+        }
+
+        // moved before it could be saved (e.g. swapped for another chestplate)
+        ItemStack[] contents = inv.getContents();
+        for (int i = 0; i < contents.length; i++) {
+            PotentialBackpackItem item = match(contents[i], save);
+            if (item != null) {
+                item.setData(data);
+                inv.setItem(i, item.getModifiedItem());
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static PotentialBackpackItem match(ItemStack item, PendingSave save) throws Exception {
+        if (!BackpackProbe.canBeBackpack(item))
+            return null;
+
+        // read without copying, most items are not the backpack
+        if (!save.backpackId.equals(BackpackProbe.idOf(item)))
+            return null;
+
+        return new PotentialBackpackItem(item);
+    }
+
+    public static int getPendingCount() {
+        return pending.size();
+    }
+
+    public static long getSaved() {
+        return saved.get();
+    }
+
+    public static long getSuperseded() {
+        return superseded.get();
+    }
+
+    public static long getFlushed() {
+        return flushed.get();
+    }
+
+    public static void resetStats() {
+        saved.set(0);
+        superseded.set(0);
+        flushed.set(0);
+    }
+
+    private static class PendingSave {
+        private final UUID playerId;
+        private final long sequence;
+        private final UUID backpackId;
+        private volatile Future<byte[]> result;
+
+        private PendingSave(UUID playerId, long sequence, UUID backpackId) {
+            this.playerId = playerId;
+            this.sequence = sequence;
+            this.backpackId = backpackId;
+        }
+    }
+}
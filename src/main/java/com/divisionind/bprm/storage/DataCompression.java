@@ -0,0 +1,149 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Optional DEFLATE stage for backpack data. Compressed data is prefixed with its own format byte and the
+ * uncompressed length, the uncompressed data keeps whatever format byte it had (see {@link InventoryCodec}).
+ * <pre>
+ *     byte    format (FORMAT_DEFLATE)
+ *     int     uncompressed length
+ *     byte[]  deflated data
+ * </pre>
+ * Data is only compressed once it is larger than the configured threshold and only kept compressed if that actually
+ * made it smaller. Small backpacks are not worth the CPU time.
+ */
+public class DataCompression {
+
+    public static final byte FORMAT_DEFLATE = 0x02;
+
+    private static final int HEADER_SIZE = 5;
+
+    // the length in the header is not trusted, a backpack holds at most 54 items and the client refuses packets (and
+    // so items) over 2MiB, anything more is corrupt
+    private static final int MAX_ITEM_SIZE = 2 * 1024 * 1024;
+    private static final int MAX_UNCOMPRESSED_LENGTH = 54 * MAX_ITEM_SIZE;
+    // DEFLATE can not do better than 258 bytes from 2 bits (about 1032:1), so this also bounds the length by the size
+    // of the compressed data. a few bytes of garbage can not make the reader allocate megabytes
+    private static final int MAX_RATIO = 1032;
+
+    // (de)compressors are expensive to create, so keep one per thread
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private static boolean enabled = true;
+    private static int threshold = 512;
+
+    public static void configure(boolean enabled, int threshold) {
+        DataCompression.enabled = enabled;
+        DataCompression.threshold = Math.max(threshold, 0);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static int getThreshold() {
+        return threshold;
+    }
+
+    public static boolean isCompressed(byte[] data) {
+        return data.length > 0 && data[0] == FORMAT_DEFLATE;
+    }
+
+    /**
+     * @param data uncompressed data
+     * @return the compressed data or data if compression was not worth it (or is disabled)
+     */
+    public static byte[] compress(byte[] data) {
+        if (!enabled || data.length <= threshold)
+            return data;
+
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(data.length / 2 + HEADER_SIZE);
+        bout.write(FORMAT_DEFLATE);
+        bout.write(data.length >>> 24);
+        bout.write(data.length >>> 16);
+        bout.write(data.length >>> 8);
+        bout.write(data.length);
+
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+            int count = deflater.deflate(buffer);
+            bout.write(buffer, 0, count);
+        }
+
+        // incompressible, do not make the reader pay for inflating it
+        if (bout.size() >= data.length)
+            return data;
+
+        return bout.toByteArray();
+    }
+
+    /**
+     * @param data data that may or may not be compressed
+     * @return the uncompressed data
+     * @throws IOException if the data was compressed but is corrupt
+     */
+    public static byte[] decompress(byte[] data) throws IOException {
+        if (!isCompressed(data))
+            return data;
+
+        if (data.length < HEADER_SIZE)
+            throw new IOException("Compressed backpack data is truncated.");
+
+        int length = ((data[1] & 0xFF) << 24) | ((data[2] & 0xFF) << 16) | ((data[3] & 0xFF) << 8) | (data[4] & 0xFF);
+        if (length < 0 || length > MAX_UNCOMPRESSED_LENGTH || length > (long) (data.length - HEADER_SIZE) * MAX_RATIO)
+            throw new IOException(String.format("Compressed backpack data is corrupt. Invalid length %s.", length));
+
+        byte[] result = new byte[length];
+
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(data, HEADER_SIZE, data.length - HEADER_SIZE);
+
+        try {
+            int read = 0;
+            while (read < length) {
+                int count = inflater.inflate(result, read, length - read);
+                if (count == 0 && (inflater.finished() || inflater.needsInput()))
+                    break;
+                read += count;
+            }
+
+            if (read != length)
+                throw new IOException(String.format("Compressed backpack data is corrupt. Expected %s bytes but got %s.",
+                        length, read));
+        } catch (DataFormatException e) {
+            throw new IOException("Compressed backpack data is corrupt.", e);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.storage;
+
+import com.divisionind.bprm.nms.NBTMap;
+import com.divisionind.bprm.nms.NMSItemStack;
+import com.divisionind.bprm.nms.reflect.NMSMethod;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Converts the contents of a storage backpack to and from the bytes stored in its backpack_data tag.
+ *
+ * The indexed binary format (what is currently written) is as follows:
+ * <pre>
+ *     byte    format (FORMAT_INDEXED)
+ *     int     data version of the server that wrote the items
+ *     int     inventory size
+ *     UTF     inventory title
+ *     int[]   offset table, size + 1 entries, slot i spans [offset[i], offset[i + 1]) of the item section
+ *     NBT...  item section, native NBT compound of each occupied slot, in order (empty slots have no bytes)
+ * </pre>
+ * The offset table allows {@link LazyBackpackData} to read or replace a single slot without decoding the others.
+ *
+ * Data in FORMAT_LEGACY, a java serialization stream of bukkit's ConfigurationSerializable items, is still read (and
+ * replaced with the indexed format the next time the backpack is saved).
+ *
+ * The result may additionally be compressed, see {@link DataCompression}.
+ *
+ * Note: Item NBT changes between versions of Minecraft (e.g. 1.20.5 replaced most of the tag with item components).
+ * Data written by an older version is passed through Minecraft's data fixers when it is read (which is why the indexed
+ * format is only used from 1.13 onward, when the data fixers became available) and is written with the items of
+ * this version once modified. Data written by a newer version can not be read at all.
+ */
+public class InventoryCodec {
+
+    /**
+     * The first byte of any java serialization stream (STREAM_MAGIC is 0xACED)
+     */
+    public static final byte FORMAT_LEGACY = (byte) 0xAC;
+    public static final byte FORMAT_INDEXED = 0x03;
+
+    public static boolean isBinarySupported() {
+        return NMSMethod.saveItem.getMethod() != null && NMSMethod.createItem.getMethod() != null
+                && NMSMethod.writeCompound.getMethod() != null && NMSMethod.readCompound.getMethod() != null;
+    }
+
+    public static byte[] encode(ItemStack[] contents, String title) throws IOException, InvocationTargetException,
+            IllegalAccessException, InstantiationException, NoSuchMethodException {
+        if (!isBinarySupported())
+            return encodeLegacy(contents, title);
+
+        byte[][] slots = new byte[contents.length][];
+        for (int i = 0; i < contents.length; i++) slots[i] = encodeItem(contents[i]);
+
+        return writeIndexed(title, slots);
+    }
+
+    public static Inventory decode(byte[] data) throws IOException, InvocationTargetException, IllegalAccessException,
+            ClassNotFoundException {
+        return LazyBackpackData.read(data).toInventory();
+    }
+
+    /**
+     * @param item item to encode
+     * @return native NBT compound of the item or null if the item is empty
+     */
+    static byte[] encodeItem(ItemStack item) throws IOException, InvocationTargetException, IllegalAccessException,
+            InstantiationException, NoSuchMethodException {
+        if (isEmpty(item))
+            return null;
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bout);
+        NMSItemStack.saveToNBT(item).write(out);
+        out.close();
+
+        return bout.toByteArray();
+    }
+
+    static ItemStack decodeItem(byte[] data, int offset, int length)
+            throws InvocationTargetException, IllegalAccessException {
+        if (length == 0)
+            return null;
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, length));
+        return NMSItemStack.loadFromNBT(NBTMap.read(in));
+    }
+
+    /**
+     * Like {@link #decodeItem(byte[], int, int)} for an item encoded by an older version of Minecraft.
+     *
+     * @param dataVersion data version of the server that encoded the item
+     */
+    static ItemStack upgradeItem(byte[] data, int offset, int length, int dataVersion)
+            throws InvocationTargetException, IllegalAccessException {
+        if (length == 0)
+            return null;
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, length));
+        return NMSItemStack.loadFromNBT(NMSItemStack.upgrade(NBTMap.read(in), dataVersion, getDataVersion()));
+    }
+
+    /**
+     * @return the data version of this server, every release of Minecraft has a higher one than the last
+     */
+    @SuppressWarnings("deprecation")
+    static int getDataVersion() {
+        return Bukkit.getUnsafe().getDataVersion();
+    }
+
+    /**
+     * @param title inventory title
+     * @param slots native NBT compound of each slot, null for empty slots
+     * @return the (possibly compressed) indexed data
+     */
+    static byte[] writeIndexed(String title, byte[][] slots) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bout);
+
+        out.writeByte(FORMAT_INDEXED);
+        out.writeInt(getDataVersion());
+        out.writeInt(slots.length);
+        out.writeUTF(title);
+
+        int offset = 0;
+        for (byte[] slot : slots) {
+            out.writeInt(offset);
+            if (slot != null) offset += slot.length;
+        }
+        out.writeInt(offset);
+
+        for (byte[] slot : slots) {
+            if (slot != null) out.write(slot);
+        }
+
+        out.close();
+        return DataCompression.compress(bout.toByteArray());
+    }
+
+    static LazyBackpackData readIndexed(byte[] source, byte[] data) throws IOException, InvocationTargetException,
+            IllegalAccessException {
+        ByteArrayInputStream bin = new ByteArrayInputStream(data, 1, data.length - 1);
+        DataInputStream in = new DataInputStream(bin);
+
+        int dataVersion = in.readInt();
+        int size = in.readInt();
+        String title = in.readUTF();
+
+        // every slot needs an offset, this also keeps a corrupt size from allocating a huge table
+        if (size < 0 || size >= bin.available() / 4)
+            throw new IOException(String.format("Backpack data is corrupt. Invalid size %s.", size));
+
+        int[] offsets = new int[size + 1];
+        for (int i = 0; i <= size; i++) offsets[i] = in.readInt();
+
+        // slots are read as a range between two offsets, out of order offsets would silently drop items
+        if (offsets[0] < 0)
+            throw new IOException("Backpack data is corrupt. Negative item offset.");
+        for (int i = 0; i < size; i++) {
+            if (offsets[i] > offsets[i + 1])
+                throw new IOException(String.format("Backpack data is corrupt. Item offsets decrease at slot %s.", i));
+        }
+
+        int itemsStart = data.length - bin.available();
+        if (offsets[size] > data.length - itemsStart)
+            throw new IOException("Backpack data is truncated.");
+
+        int current = getDataVersion();
+        if (dataVersion != current) {
+            if (dataVersion > current || !NMSItemStack.isUpgradeSupported())
+                throw new IOException(String.format("Backpack data was saved by data version %s and can not be " +
+                        "loaded by this server (data version %s).", dataVersion, current));
+
+            // the items of another version can not be copied as is when the data is written again, upgrade them all
+            ItemStack[] items = new ItemStack[size];
+            for (int i = 0; i < size; i++)
+                items[i] = upgradeItem(data, itemsStart + offsets[i], offsets[i + 1] - offsets[i], dataVersion);
+
+            return new LazyBackpackData(source, title, items);
+        }
+
+        return new LazyBackpackData(source, title, data, itemsStart, offsets);
+    }
+
+    static LazyBackpackData readLegacy(byte[] source, byte[] data) throws IOException, ClassNotFoundException {
+        // create input streams
+        ByteArrayInputStream bin = new ByteArrayInputStream(data);
+        BukkitObjectInputStream in = new BukkitObjectInputStream(bin);
+
+        // read inventory size / title
+        int size = in.readInt();
+        String title = in.readUTF();
+
+        // load items from inventory
+        ItemStack[] items = new ItemStack[size];
+        for (int i = 0; i < size; i++) items[i] = (ItemStack) in.readObject();
+
+        // close stream, return contents
+        in.close();
+        return new LazyBackpackData(source, title, items);
+    }
+
+    private static boolean isEmpty(ItemStack item) {
+        return item == null || item.getType().equals(Material.AIR);
+    }
+
+    private static byte[] encodeLegacy(ItemStack[] contents, String title) throws IOException {
+        // create output streams
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        BukkitObjectOutputStream out = new BukkitObjectOutputStream(bout);
+
+        // write view name and inventory size (not storing this info with backpack type for legacy reasons)
+        out.writeInt(contents.length);
+        out.writeUTF(title);
+
+        // store items
+        for (ItemStack item : contents) out.writeObject(item);
+
+        // flush and close output
+        out.flush();
+        out.close();
+
+        return DataCompression.compress(bout.toByteArray());
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.storage;
+
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * A view of stored backpack contents that only decodes the slots that are actually accessed. Questions like "how
+ * many slots are occupied" or "replace slot N" are answered from the offset table of the indexed format (see
+ * {@link InventoryCodec}) without decoding any item, and unchanged slots are copied as raw bytes when re-encoded.
+ *
+ * Data in the legacy format is decoded entirely when read (there is no offset table to work with) and is written in
+ * the indexed format once modified.
+ */
+public class LazyBackpackData {
+
+    private final byte[] source;
+    private final String title;
+    private final int size;
+
+    // only present for the indexed format
+    private final byte[] raw;
+    private final int itemsStart;
+    private final int[] offsets;
+
+    private final ItemStack[] items;
+    private final boolean[] loaded;
+    private final boolean[] replaced;
+    private boolean modified;
+
+    LazyBackpackData(byte[] source, String title, byte[] raw, int itemsStart, int[] offsets) {
+        this.source = source;
+        this.title = title;
+        this.size = offsets.length - 1;
+        this.raw = raw;
+        this.itemsStart = itemsStart;
+        this.offsets = offsets;
+        this.items = new ItemStack[size];
+        this.loaded = new boolean[size];
+        this.replaced = new boolean[size];
+    }
+
+    LazyBackpackData(byte[] source, String title, ItemStack[] items) {
+        this.source = source;
+        this.title = title;
+        this.size = items.length;
+        this.raw = null;
+        this.itemsStart = 0;
+        this.offsets = null;
+        this.items = items;
+        this.loaded = new boolean[size];
+        this.replaced = new boolean[size];
+
+        for (int i = 0; i < size; i++) loaded[i] = true;
+    }
+
+    /**
+     * Reads the header of the stored data. Items are decoded on demand.
+     *
+     * @param data data as stored in the backpack_data tag
+     * @return view of the data
+     */
+    public static LazyBackpackData read(byte[] data) throws IOException, InvocationTargetException,
+            IllegalAccessException, ClassNotFoundException {
+        byte[] uncompressed = DataCompression.decompress(data);
+
+        if (uncompressed.length == 0 || uncompressed[0] == InventoryCodec.FORMAT_LEGACY)
+            return InventoryCodec.readLegacy(data, uncompressed);
+
+        switch (uncompressed[0]) {
+            case InventoryCodec.FORMAT_INDEXED:
+                return InventoryCodec.readIndexed(data, uncompressed);
+            default:
+                throw new IOException(String.format("Unknown backpack data format 0x%02x.", uncompressed[0]));
+        }
+    }
+
+    /**
+     * @param size number of slots
+     * @param title inventory title
+     * @return view with no data behind it where every slot is empty
+     */
+    public static LazyBackpackData create(int size, String title) {
+        LazyBackpackData data = new LazyBackpackData(null, title, new ItemStack[size]);
+        data.modified = true;
+        return data;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public boolean isOccupied(int slot) {
+        if (loaded[slot])
+            return items[slot] != null;
+
+        return offsets[slot + 1] > offsets[slot];
+    }
+
+    public int getOccupiedCount() {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (isOccupied(i)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * @param slot slot of the item
+     * @return the item in the slot or null if it is empty (this is decoded once and cached)
+     */
+    public ItemStack getItem(int slot) throws InvocationTargetException, IllegalAccessException {
+        if (!loaded[slot]) {
+            items[slot] = InventoryCodec.decodeItem(raw, itemsStart + offsets[slot], offsets[slot + 1] - offsets[slot]);
+            loaded[slot] = true;
+        }
+
+        return items[slot];
+    }
+
+    public void setItem(int slot, ItemStack item) {
+        items[slot] = item;
+        loaded[slot] = true;
+        replaced[slot] = true;
+        modified = true;
+    }
+
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * @return the data to store in the backpack_data tag, this is the data that was read if nothing was modified
+     */
+    public byte[] toBytes() throws IOException, InvocationTargetException, IllegalAccessException,
+            InstantiationException, NoSuchMethodException {
+        if (!modified)
+            return source;
+
+        if (!InventoryCodec.isBinarySupported())
+            return InventoryCodec.encode(toContents(), title);
+
+        byte[][] slots = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            if (raw == null || replaced[i]) {
+                slots[i] = InventoryCodec.encodeItem(items[i]);
+            } else
+            if (offsets[i + 1] > offsets[i]) {
+                // unchanged, copy the compound as is
+                slots[i] = new byte[offsets[i + 1] - offsets[i]];
+                System.arraycopy(raw, itemsStart + offsets[i], slots[i], 0, slots[i].length);
+            }
+        }
+
+        return InventoryCodec.writeIndexed(title, slots);
+    }
+
+    /**
+     * @return all items, decoding any that have not been yet
+     */
+    public ItemStack[] toContents() throws InvocationTargetException, IllegalAccessException {
+        ItemStack[] contents = new ItemStack[size];
+        for (int i = 0; i < size; i++) contents[i] = getItem(i);
+        return contents;
+    }
+
+    public Inventory toInventory() throws InvocationTargetException, IllegalAccessException {
+        Inventory inv = Bukkit.getServer().createInventory(null, size, title);
+        inv.setContents(toContents());
+        return inv;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm;
+
+import com.divisionind.bprm.nms.KnownVersion;
+import com.divisionind.bprm.nms.reflect.NMS;
+import com.divisionind.bprm.storage.InventoryCodec;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Smoke test of a stand-in server, there is a subclass for every built-in version. The version is detected once per
+ * JVM, so gradle runs every test class in its own JVM (see forkEvery in build.gradle).
+ */
+public abstract class StandInServerTest {
+
+    private final String version;
+    private final boolean binaryCodec;
+
+    /**
+     * @param version version of the stand-in to start
+     * @param binaryCodec whether the version supports the binary item codec (1.13+) or uses the legacy one
+     */
+    protected StandInServerTest(String version, boolean binaryCodec) {
+        this.version = version;
+        this.binaryCodec = binaryCodec;
+    }
+
+    @Before
+    public void start() throws Exception {
+        StandInServer.start(version);
+    }
+
+    @Test
+    public void detectsVersion() {
+        assertEquals(version, KnownVersion.VERSION);
+    }
+
+    @Test
+    public void initializesNMS() {
+        // NMS can only be initialized once per JVM, the stand-in did it when it was started
+        assertEquals(Collections.emptyList(), StandInServer.getInitializationErrors());
+        assertNotNull(NMS.getInitializationReport());
+    }
+
+    @Test
+    public void roundTripsInventoryCodec() throws Exception {
+        assertEquals(binaryCodec, InventoryCodec.isBinarySupported());
+
+        ItemStack[] contents = StandInServer.contents(27);
+        Inventory decoded = InventoryCodec.decode(InventoryCodec.encode(contents, "Stand-in"));
+
+        assertArrayEquals(contents, decoded.getContents());
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.divisionind.bprm.furnace;
+
+import com.divisionind.bprm.standin.StandInFurnace;
+import com.divisionind.bprm.standin.StandInItem;
+import net.minecraft.server.v1_16_R3.ItemStack;
+import net.minecraft.server.v1_16_R3.NBTTagCompound;
+import org.junit.Test;
+
+import static com.divisionind.bprm.standin.StandInFurnace.SLOT_FUEL;
+import static com.divisionind.bprm.standin.StandInFurnace.SLOT_INPUT;
+import static com.divisionind.bprm.standin.StandInFurnace.SLOT_RESULT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Fast-forwarding a furnace with a {@link FurnaceState} must end up exactly where ticking the stand-in furnace (which
+ * follows the furnace tick of 1.14+) one tick at a time does.
+ */
+public class FurnaceStateTest {
+
+    private static final int COOK_TIME = 200;
+
+    @Test
+    public void smeltsFullStacksLikeTicking() {
+        // lights, finishes the first item, runs out of the first coal, fills the result slot and goes idle
+        assertAdvancesLikeTicking(furnace("IRON_ORE", 64, "COAL", 64, null, 0),
+                1, 199, 1, 1399, 1, 10000, 5000, 20000);
+    }
+
+    @Test
+    public void losesProgressWhenTheFuelRunsOut() {
+        // three planks burn for 900 ticks, the fifth item is left half done and cools down
+        assertAdvancesLikeTicking(furnace("COBBLESTONE", 10, "OAK_PLANKS", 3, null, 0), 899, 1, 1, 1, 10, 50, 1000);
+    }
+
+    @Test
+    public void keepsBurningAfterTheInputRunsOut() {
+        // a lava bucket burns for 20000 ticks, far longer than 5 items take, and leaves the bucket behind
+        assertAdvancesLikeTicking(furnace("SAND", 5, "LAVA_BUCKET", 1, null, 0), 1, 999, 1, 15000, 5000, 100);
+    }
+
+    @Test
+    public void stopsAtTheOutputLimit() {
+        assertAdvancesLikeTicking(furnace("IRON_ORE", 3, "COAL", 1, "IRON_INGOT", 63), 200, 1, 400, 2000);
+    }
+
+    @Test
+    public void doesNotStartOnAMismatchedResult() {
+        assertAdvancesLikeTicking(furnace("IRON_ORE", 3, "COAL", 2, "GLASS", 1), 1, 1000);
+    }
+
+    @Test
+    public void continuesFromAnyTick() {
+        // a furnace is put to sleep at whatever tick it was released at
+        for (int ticked : new int[] {1, 150, 777, 1600, 1601, 3333}) {
+            StandInFurnace furnace = furnace("GOLD_ORE", 20, "COAL", 2, null, 0);
+            for (int i = 0; i < ticked; i++) furnace.tick();
+
+            assertAdvancesLikeTicking(furnace, 1, 199, 2500, 4000);
+        }
+    }
+
+    @Test
+    public void isIdleAfterTicksUntilIdle() {
+        StandInFurnace furnace = furnace("COBBLESTONE", 7, "COAL", 1, null, 0);
+        FurnaceState state = stateOf(furnace);
+        long ticks = state.ticksUntilIdle();
+
+        for (long i = 0; i < ticks - 1; i++) furnace.tick();
+        assertTrue(furnace.isBurning());
+        furnace.tick();
+        assertFalse(furnace.isBurning());
+
+        // the state itself is left untouched
+        assertEquals(7, state.getInput());
+        assertEquals(0, state.getSmelted());
+    }
+
+    /**
+     * Advances a state read from the furnace by each step, ticks the furnace as often and compares them after every
+     * step.
+     */
+    private static void assertAdvancesLikeTicking(StandInFurnace furnace, long... steps) {
+        FurnaceState state = stateOf(furnace);
+        int outputBefore = count(furnace.getItem(SLOT_RESULT));
+        long ticked = 0;
+
+        for (long step : steps) {
+            state.advance(step);
+            for (long i = 0; i < step; i++) furnace.tick();
+            ticked += step;
+
+            String message = "after " + ticked + " ticks";
+            NBTTagCompound tag = new NBTTagCompound();
+            furnace.save(tag);
+            assertEquals(message, tag.getShort("BurnTime"), state.getBurnTime());
+            assertEquals(message, tag.getShort("CookTime"), state.getCookTime());
+            assertEquals(message, tag.getShort("CookTimeTotal"), state.getCookTimeTotal());
+            assertEquals(message, count(furnace.getItem(SLOT_INPUT)), state.getInput());
+            assertEquals(message, count(furnace.getItem(SLOT_RESULT)), state.getOutput());
+            assertEquals(message, count(furnace.getItem(SLOT_RESULT)) - outputBefore, state.getSmelted());
+
+            StandInItem fuel = furnace.getItem(SLOT_FUEL);
+            boolean bucket = fuel != null && "BUCKET".equals(fuel.getId());
+            assertEquals(message, bucket, state.isFuelReplaced());
+            assertEquals(message, bucket ? 0 : count(fuel), state.getFuel());
+        }
+    }
+
+    /**
+     * Reads the state of the furnace the way {@link FurnaceFastForward} does.
+     */
+    private static FurnaceState stateOf(StandInFurnace furnace) {
+        NBTTagCompound tag = new NBTTagCompound();
+        furnace.save(tag);
+
+        StandInItem input = furnace.getItem(SLOT_INPUT);
+        StandInItem fuel = furnace.getItem(SLOT_FUEL);
+        StandInItem result = furnace.getItem(SLOT_RESULT);
+        String recipeResult = input == null ? null : StandInFurnace.resultOf(input.getId());
+
+        return new FurnaceState(
+                tag.getShort("BurnTime"),
+                tag.getShort("CookTime"),
+                tag.getShort("CookTimeTotal"),
+                count(input),
+                count(fuel),
+                count(result),
+                StandInFurnace.fuelTime(fuel),
+                input == null ? 0 : COOK_TIME,
+                1,
+                64,
+                result == null || result.getId().equals(recipeResult),
+                fuel != null && "LAVA_BUCKET".equals(fuel.getId()));
+    }
+
+    private static StandInFurnace furnace(String input, int inputCount, String fuel, int fuelCount, String result,
+                                          int resultCount) {
+        StandInFurnace furnace = new StandInFurnace(ItemStack::new);
+        furnace.setItem(SLOT_INPUT, new ItemStack(input, inputCount));
+        furnace.setItem(SLOT_FUEL, new ItemStack(fuel, fuelCount));
+        if (result != null) furnace.setItem(SLOT_RESULT, new ItemStack(result, resultCount));
+        return furnace;
+    }
+
+    private static int count(StandInItem item) {
+        return item == null || item.isEmpty() ? 0 : item.getCount();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.divisionind.bprm.location;
+
+import com.divisionind.bprm.PotentialBackpackItem;
+import com.divisionind.bprm.StandInServer;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A tracked backpack must be found again however it changed, unless it was written to since it was tracked.
+ */
+public class ItemMatcherTest {
+
+    private static final UUID ID = UUID.fromString("8c6f7c4e-2f0a-4d47-9d59-3c1f7d2b6a11");
+
+    @Before
+    public void start() throws Exception {
+        StandInServer.start();
+    }
+
+    @Test
+    public void matchesTheSameGeneration() throws Exception {
+        ItemMatcher matcher = ItemMatcher.of(backpack(ID, 3, "Backpack"));
+
+        assertEquals(ID, matcher.getId());
+        assertTrue(matcher.matches(backpack(ID, 3, "Backpack")));
+    }
+
+    @Test
+    public void matchesAnOlderGeneration() throws Exception {
+        // e.g. the player took an older copy of the backpack out of a chest, writing to it is still safe
+        assertTrue(ItemMatcher.of(backpack(ID, 3, "Backpack")).matches(backpack(ID, 2, "Backpack")));
+    }
+
+    @Test
+    public void rejectsANewerGeneration() throws Exception {
+        // the backpack was written to since, writing the tracked copy back would undo that
+        assertFalse(ItemMatcher.of(backpack(ID, 3, "Backpack")).matches(backpack(ID, 4, "Backpack")));
+    }
+
+    @Test
+    public void matchesByIdOnly() throws Exception {
+        assertTrue(ItemMatcher.of(backpack(ID, 0, "Backpack")).matches(backpack(ID, 0, "Renamed")));
+    }
+
+    @Test
+    public void rejectsOtherBackpacks() throws Exception {
+        ItemMatcher matcher = ItemMatcher.of(backpack(ID, 0, "Backpack"));
+
+        assertFalse(matcher.matches(backpack(UUID.randomUUID(), 0, "Backpack")));
+        assertFalse(matcher.matches(backpack(null, 0, "Backpack")));
+        assertFalse(matcher.matches(new ItemStack(Material.COBBLESTONE)));
+        assertFalse(matcher.matches(null));
+    }
+
+    @Test
+    public void fallsBackToEqualityWithoutAnId() throws Exception {
+        ItemStack item = backpack(null, 0, "Backpack");
+        ItemMatcher matcher = ItemMatcher.of(item);
+
+        assertNull(matcher.getId());
+        assertTrue(matcher.matches(item.clone()));
+        assertFalse(matcher.matches(backpack(null, 0, "Renamed")));
+    }
+
+    /**
+     * @param id id of the backpack or null for one from before ids were assigned
+     * @param generation number of writes to the backpack
+     * @param name display name of the item
+     * @return the backpack item
+     */
+    private static ItemStack backpack(UUID id, long generation, String name) throws Exception {
+        ItemStack item = new ItemStack(Material.LEATHER_CHESTPLATE);
+        ItemMeta meta = item.getItemMeta();
+        meta.setDisplayName(name);
+        item.setItemMeta(meta);
+
+        PotentialBackpackItem backpack = new PotentialBackpackItem(item);
+        backpack.setType(0);
+        if (id != null) {
+            backpack.setLong(PotentialBackpackItem.FIELD_NAME_ID_MOST, id.getMostSignificantBits());
+            backpack.setLong(PotentialBackpackItem.FIELD_NAME_ID_LEAST, id.getLeastSignificantBits());
+        }
+        for (long i = 0; i < generation; i++) backpack.nextGeneration();
+
+        return backpack.getModifiedItem();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.divisionind.bprm.storage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DataCompressionTest {
+
+    @Before
+    public void configure() {
+        DataCompression.configure(true, 512);
+    }
+
+    @Test
+    public void roundTrips() throws IOException {
+        byte[] data = repetitive(64 * 1024);
+        byte[] compressed = DataCompression.compress(data);
+
+        assertTrue(DataCompression.isCompressed(compressed));
+        assertTrue(compressed.length < data.length);
+        assertArrayEquals(data, DataCompression.decompress(compressed));
+    }
+
+    @Test
+    public void leavesSmallDataAlone() throws IOException {
+        byte[] data = repetitive(512);
+        assertSame(data, DataCompression.compress(data));
+        assertSame(data, DataCompression.decompress(data));
+    }
+
+    @Test
+    public void leavesIncompressibleDataAlone() {
+        byte[] data = new byte[4096];
+        new Random(6017).nextBytes(data);
+        data[0] = InventoryCodec.FORMAT_INDEXED;
+
+        byte[] result = DataCompression.compress(data);
+        assertSame(data, result);
+        assertFalse(DataCompression.isCompressed(result));
+    }
+
+    @Test
+    public void leavesDataAloneWhenDisabled() {
+        DataCompression.configure(false, 512);
+        byte[] data = repetitive(64 * 1024);
+        assertSame(data, DataCompression.compress(data));
+    }
+
+    @Test
+    public void rejectsTruncatedHeader() {
+        assertCorrupt(new byte[] {DataCompression.FORMAT_DEFLATE, 0, 0}, "truncated");
+    }
+
+    @Test
+    public void rejectsNegativeLength() {
+        assertCorrupt(withLength(DataCompression.compress(repetitive(4096)), -1), "Invalid length");
+    }
+
+    @Test
+    public void rejectsLengthDeflateCanNotReach() {
+        // a few bytes claiming to be 100MB, nothing may be allocated for that
+        assertCorrupt(new byte[] {DataCompression.FORMAT_DEFLATE, 0x06, 0, 0, 0, 1, 2, 3}, "Invalid length");
+    }
+
+    @Test
+    public void rejectsWrongLength() {
+        byte[] compressed = DataCompression.compress(repetitive(4096));
+        assertCorrupt(withLength(compressed, 4097), "Expected 4097 bytes");
+    }
+
+    @Test
+    public void rejectsCorruptStream() {
+        byte[] compressed = DataCompression.compress(repetitive(4096));
+        Arrays.fill(compressed, 5, compressed.length, (byte) 0xFF);
+        assertCorrupt(compressed, "corrupt");
+    }
+
+    private static void assertCorrupt(byte[] data, String message) {
+        try {
+            DataCompression.decompress(data);
+            fail("Decompressed corrupt data");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+    private static byte[] withLength(byte[] compressed, int length) {
+        byte[] copy = compressed.clone();
+        copy[1] = (byte) (length >>> 24);
+        copy[2] = (byte) (length >>> 16);
+        copy[3] = (byte) (length >>> 8);
+        copy[4] = (byte) length;
+        return copy;
+    }
+
+    /**
+     * @return data that compresses well, like the NBT of a backpack full of similar items
+     */
+    private static byte[] repetitive(int length) {
+        byte[] data = new byte[length];
+        data[0] = InventoryCodec.FORMAT_INDEXED;
+        for (int i = 1; i < length; i++) data[i] = (byte) ("minecraft:cobblestone".charAt(i % 21));
+        return data;
+    }
+}
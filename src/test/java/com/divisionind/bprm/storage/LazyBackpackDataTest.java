@@ -0,0 +1,139 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.divisionind.bprm.storage;
+
+import com.divisionind.bprm.StandInServer;
+import org.bukkit.inventory.ItemStack;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Reading the indexed format, the offset table must be validated before a slot is read through it.
+ */
+public class LazyBackpackDataTest {
+
+    @Before
+    public void start() throws Exception {
+        // the indexed format is only written from 1.13 onward
+        StandInServer.start("v1_16_R3");
+    }
+
+    @Test
+    public void readsEverySlot() throws Exception {
+        ItemStack[] contents = StandInServer.contents(27);
+        LazyBackpackData data = LazyBackpackData.read(InventoryCodec.encode(contents, "Stand-in"));
+
+        assertEquals(27, data.getSize());
+        assertEquals("Stand-in", data.getTitle());
+        assertEquals(24, data.getOccupiedCount());
+        for (int i = 0; i < contents.length; i++) assertEquals("slot " + i, contents[i], data.getItem(i));
+    }
+
+    @Test
+    public void keepsUnmodifiedData() throws Exception {
+        byte[] encoded = InventoryCodec.encode(StandInServer.contents(27), "Stand-in");
+        assertSame(encoded, LazyBackpackData.read(encoded).toBytes());
+    }
+
+    @Test
+    public void replacesSingleSlots() throws Exception {
+        ItemStack[] contents = StandInServer.contents(27);
+        LazyBackpackData data = LazyBackpackData.read(InventoryCodec.encode(contents, "Stand-in"));
+        data.setItem(0, null);
+        data.setItem(5, contents[2]);
+
+        contents[0] = null;
+        contents[5] = contents[2];
+        assertArrayEquals(contents, LazyBackpackData.read(data.toBytes()).toContents());
+    }
+
+    @Test
+    public void readsEmptySlots() throws Exception {
+        LazyBackpackData data = LazyBackpackData.read(indexed(InventoryCodec.getDataVersion(), 2, 0, 0, 0, 0));
+        assertEquals(0, data.getOccupiedCount());
+        assertNull(data.getItem(1));
+    }
+
+    @Test
+    public void rejectsSizeLargerThanTheOffsetTable() throws IOException {
+        assertCorrupt(indexed(InventoryCodec.getDataVersion(), 1000, 0, 0, 0, 0), "Invalid size 1000");
+        assertCorrupt(indexed(InventoryCodec.getDataVersion(), -1, 0, 0), "Invalid size -1");
+    }
+
+    @Test
+    public void rejectsNegativeOffset() throws IOException {
+        assertCorrupt(indexed(InventoryCodec.getDataVersion(), 2, 0, -1, 0, 0), "Negative item offset");
+    }
+
+    @Test
+    public void rejectsDecreasingOffsets() throws IOException {
+        assertCorrupt(indexed(InventoryCodec.getDataVersion(), 3, 10, 0, 10, 5, 10), "decrease at slot 1");
+    }
+
+    @Test
+    public void rejectsOffsetsPastTheItems() throws IOException {
+        assertCorrupt(indexed(InventoryCodec.getDataVersion(), 2, 10, 0, 5, 20), "truncated");
+    }
+
+    @Test
+    public void rejectsDataOfANewerVersion() throws IOException {
+        assertCorrupt(indexed(InventoryCodec.getDataVersion() + 1, 2, 0, 0, 0, 0), "data version");
+    }
+
+    private static void assertCorrupt(byte[] data, String message) {
+        try {
+            LazyBackpackData.read(data);
+            fail("Read corrupt data");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        } catch (Exception e) {
+            throw new AssertionError("Corrupt data was not reported as such", e);
+        }
+    }
+
+    /**
+     * @param itemBytes length of the item section (filled with zeros)
+     * @param offsets the offset table
+     * @return uncompressed data in the indexed format
+     */
+    private static byte[] indexed(int dataVersion, int size, int itemBytes, int... offsets) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bout);
+        out.writeByte(InventoryCodec.FORMAT_INDEXED);
+        out.writeInt(dataVersion);
+        out.writeInt(size);
+        out.writeUTF("Corrupt");
+        for (int offset : offsets) out.writeInt(offset);
+        out.write(new byte[itemBytes]);
+        out.close();
+        return bout.toByteArray();
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import com.divisionind.bprm.nms.reflect.NMS;
+import org.bukkit.Material;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.plugin.Plugin;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Runs the plugin against a stand-in server, so its hot paths can be tested and benchmarked without a Minecraft server.
+ * Bukkit is provided by MockBukkit, the NMS classes the plugin resolves are stand-ins (see net.minecraft.server and
+ * org.bukkit.craftbukkit in this source set).
+ *
+ * There is a stand-in for every version registered with {@link #register(String, Supplier)}, v1_12_R1 (the pre-1.13
+ * names and legacy item codec) and v1_16_R3 (the binary item codec and furnace fast-forwarding) are built in. The
+ * version is detected once per JVM by {@link com.divisionind.bprm.nms.KnownVersion}, so only one of them can be
+ * started per JVM. Which one is chosen by the {@value #VERSION_PROPERTY} system property (gradle -Pstandin=...).
+ */
+public class StandInServer {
+
+    public static final String VERSION_PROPERTY = "bprm.standin";
+    public static final String DEFAULT_VERSION = "v1_16_R3";
+
+    private static final Map<String, Supplier<? extends ServerMock>> VERSIONS = new LinkedHashMap<>();
+
+    static {
+        register("v1_12_R1", org.bukkit.craftbukkit.v1_12_R1.CraftServer::new);
+        register("v1_16_R3", org.bukkit.craftbukkit.v1_16_R3.CraftServer::new);
+    }
+
+    private static String started;
+    private static List<Exception> initializationErrors;
+    private static Plugin plugin;
+
+    /**
+     * Adds a stand-in for a version. The server it creates must live in the org.bukkit.craftbukkit package of that
+     * version and every NMS class the plugin resolves for it must exist, just like on a real server.
+     *
+     * @param version name of the {@link com.divisionind.bprm.nms.KnownVersion} (not the constant, referencing it
+     *                would detect the version before there is a server)
+     * @param server creates the server
+     */
+    public static synchronized void register(String version, Supplier<? extends ServerMock> server) {
+        VERSIONS.put(version, server);
+    }
+
+    /**
+     * @return the versions there is a stand-in for
+     */
+    public static synchronized Set<String> getVersions() {
+        return Collections.unmodifiableSet(VERSIONS.keySet());
+    }
+
+    /**
+     * @return the version that was started or null if none was
+     */
+    public static synchronized String getVersion() {
+        return started;
+    }
+
+    /**
+     * Starts the stand-in for the version chosen by the {@value #VERSION_PROPERTY} system property, or
+     * {@value #DEFAULT_VERSION} if it is not set.
+     *
+     * @see #start(String)
+     */
+    public static void start() throws Exception {
+        start(System.getProperty(VERSION_PROPERTY, DEFAULT_VERSION));
+    }
+
+    /**
+     * Starts the server, initializes NMS and creates the backpack items from the default config. Does nothing if it
+     * was already started.
+     *
+     * @param version version to start the stand-in for
+     * @throws IllegalArgumentException if there is no stand-in for the version
+     * @throws IllegalStateException if another version was started already or NMS failed to initialize
+     */
+    public static synchronized void start(String version) throws Exception {
+        if (version.equals(started))
+            return;
+
+        if (started != null)
+            throw new IllegalStateException(String.format("The stand-in for %s was already started, %s can only be " +
+                    "started in a new JVM.", started, version));
+
+        Supplier<? extends ServerMock> server = VERSIONS.get(version);
+        if (server == null)
+            throw new IllegalArgumentException(String.format("There is no stand-in for %s, known versions are %s.",
+                    version, VERSIONS.keySet()));
+
+        MockBukkit.mock(server.get());
+
+        // NMS can only be initialized once, what it returned is kept for getInitializationErrors()
+        List<Exception> exceptions = NMS.initialize();
+        initializationErrors = Collections.unmodifiableList(exceptions);
+        if (!exceptions.isEmpty()) {
+            IllegalStateException e = new IllegalStateException(exceptions.size() +
+                    " error(s) initializing NMS against the stand-in server.");
+            for (Exception ex : exceptions) e.addSuppressed(ex);
+            throw e;
+        }
+
+        // the same as BackpackRecipes does, minus registering the recipes
+        try (Reader reader = new InputStreamReader(Backpacks.class.getResourceAsStream("/config.yml"),
+                StandardCharsets.UTF_8)) {
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(reader);
+            for (BackpackObject backpack : BackpackObject.values()) {
+                String name = backpack.name().toLowerCase();
+                List<String> lore = config.getStringList(String.format("recipes.%s.lore", name));
+                for (int i = 0; i < lore.size(); i++) lore.set(i, Backpacks.translate(lore.get(i)));
+                backpack.init(config.getString(String.format("recipes.%s.display_name", name)), lore);
+            }
+        }
+
+        started = version;
+    }
+
+    /**
+     * @return what {@link NMS#initialize()} returned when the server was started, empty as start() fails otherwise
+     */
+    public static synchronized List<Exception> getInitializationErrors() {
+        if (started == null)
+            throw new IllegalStateException("The stand-in server was not started.");
+
+        return initializationErrors;
+    }
+
+    /**
+     * A plugin for the things that need one (e.g. the scheduler), it is created the first time this is called.
+     *
+     * @return the plugin
+     */
+    public static synchronized Plugin getPlugin() {
+        if (started == null)
+            throw new IllegalStateException("The stand-in server was not started.");
+
+        if (plugin == null) plugin = MockBukkit.createMockPlugin();
+        return plugin;
+    }
+
+    /**
+     * Runs the scheduler of the stand-in server for a number of ticks, e.g. to drive the furnace scheduler.
+     *
+     * @param ticks number of ticks
+     */
+    public static void tick(long ticks) {
+        MockBukkit.getMock().getScheduler().performTicks(ticks);
+    }
+
+    /**
+     * Puts a full stack of input and fuel in a stand-in furnace (e.g. one from FurnacePool) of whichever version was
+     * started.
+     *
+     * @param furnace the NMS furnace
+     * @param input material name of what to smelt
+     * @param fuel material name of the fuel
+     */
+    public static void fillFurnace(Object furnace, String input, String fuel) throws ReflectiveOperationException {
+        // the stand-in items are in the same package as the furnace, the input is slot 0 and the fuel 1
+        Class<?> itemClass = Class.forName(furnace.getClass().getPackage().getName() + ".ItemStack");
+        Constructor<?> item = itemClass.getConstructor(String.class, int.class);
+        Method setItem = furnace.getClass().getMethod("setItem", int.class, itemClass);
+
+        setItem.invoke(furnace, 0, item.newInstance(input, 64));
+        setItem.invoke(furnace, 1, item.newInstance(fuel, 64));
+    }
+
+    /**
+     * Fills an inventory the way a player would, mostly stacks of blocks and materials with some named gear in
+     * between and a few empty slots.
+     *
+     * @param size number of slots
+     * @return the contents
+     */
+    public static ItemStack[] contents(int size) {
+        ItemStack[] contents = new ItemStack[size];
+
+        for (int i = 0; i < size; i++) {
+            switch (i % 9) {
+                case 0: contents[i] = new ItemStack(Material.COBBLESTONE, 64); break;
+                case 1: contents[i] = new ItemStack(Material.OAK_LOG, 32); break;
+                case 2: contents[i] = new ItemStack(Material.IRON_INGOT, 17); break;
+                case 3: contents[i] = gear(Material.DIAMOND_SWORD, "&bSharp Thing", i); break;
+                case 4: contents[i] = new ItemStack(Material.TORCH, 48); break;
+                case 5: break;
+                case 6: contents[i] = new ItemStack(Material.BREAD, 12); break;
+                case 7: contents[i] = gear(Material.IRON_PICKAXE, "&7Old Reliable", i); break;
+                case 8: contents[i] = new ItemStack(Material.REDSTONE, 64); break;
+            }
+        }
+
+        return contents;
+    }
+
+    private static ItemStack gear(Material material, String name, int slot) {
+        ItemStack item = new ItemStack(material);
+        ItemMeta meta = item.getItemMeta();
+        meta.setDisplayName(Backpacks.translate(name));
+        meta.setLore(Arrays.asList("Found in slot " + slot, "Handle with care."));
+        item.setItemMeta(meta);
+        return item;
+    }
+}
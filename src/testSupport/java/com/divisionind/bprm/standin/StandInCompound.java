@@ -0,0 +1,242 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.standin;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stand-in for the NMS NBTTagCompound with the pre-1.18 (deobfuscated) accessor names. Like the real one, missing
+ * values read as 0, an empty string or an empty array. The NBTTagCompound of each version only adds the accessors
+ * whose names or types differ (the key listing and set) and creates the tags of its version.
+ */
+public abstract class StandInCompound implements StandInTag, Cloneable {
+
+    static final byte TYPE_ID = 10;
+
+    private HashMap<String, StandInTag> map = new HashMap<>();
+
+    /**
+     * @return an empty compound of the same version
+     */
+    protected abstract StandInCompound newCompound();
+
+    /**
+     * @return a value tag of the same version
+     */
+    protected abstract StandInTag newValue(byte typeId, Object value);
+
+    @Override
+    public byte getTypeId() {
+        return TYPE_ID;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public StandInCompound clone() {
+        try {
+            StandInCompound copy = (StandInCompound) super.clone();
+            copy.map = (HashMap<String, StandInTag>) map.clone();
+            copy.map.replaceAll((key, value) -> value.clone());
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof StandInCompound && map.equals(((StandInCompound) o).map);
+    }
+
+    @Override
+    public int hashCode() {
+        return map.hashCode();
+    }
+
+    protected Set<String> keys() {
+        return map.keySet();
+    }
+
+    protected StandInTag put(String key, StandInTag value) {
+        return map.put(key, value);
+    }
+
+    public boolean hasKey(String key) {
+        return map.containsKey(key);
+    }
+
+    public void remove(String key) {
+        map.remove(key);
+    }
+
+    public StandInTag get(String key) {
+        return map.get(key);
+    }
+
+    public void setByte(String key, byte value) {
+        map.put(key, newValue(StandInValue.BYTE, value));
+    }
+
+    public void setShort(String key, short value) {
+        map.put(key, newValue(StandInValue.SHORT, value));
+    }
+
+    public void setInt(String key, int value) {
+        map.put(key, newValue(StandInValue.INT, value));
+    }
+
+    public void setLong(String key, long value) {
+        map.put(key, newValue(StandInValue.LONG, value));
+    }
+
+    public void setFloat(String key, float value) {
+        map.put(key, newValue(StandInValue.FLOAT, value));
+    }
+
+    public void setDouble(String key, double value) {
+        map.put(key, newValue(StandInValue.DOUBLE, value));
+    }
+
+    public void setString(String key, String value) {
+        map.put(key, newValue(StandInValue.STRING, value));
+    }
+
+    public void setByteArray(String key, byte[] value) {
+        map.put(key, newValue(StandInValue.BYTE_ARRAY, value));
+    }
+
+    public void setIntArray(String key, int[] value) {
+        map.put(key, newValue(StandInValue.INT_ARRAY, value));
+    }
+
+    public void setBoolean(String key, boolean value) {
+        setByte(key, (byte) (value ? 1 : 0));
+    }
+
+    public byte getByte(String key) {
+        Object value = value(key, StandInValue.BYTE);
+        return value == null ? 0 : (byte) value;
+    }
+
+    public short getShort(String key) {
+        Object value = value(key, StandInValue.SHORT);
+        return value == null ? 0 : (short) value;
+    }
+
+    public int getInt(String key) {
+        Object value = value(key, StandInValue.INT);
+        return value == null ? 0 : (int) value;
+    }
+
+    public long getLong(String key) {
+        Object value = value(key, StandInValue.LONG);
+        return value == null ? 0 : (long) value;
+    }
+
+    public float getFloat(String key) {
+        Object value = value(key, StandInValue.FLOAT);
+        return value == null ? 0 : (float) value;
+    }
+
+    public double getDouble(String key) {
+        Object value = value(key, StandInValue.DOUBLE);
+        return value == null ? 0 : (double) value;
+    }
+
+    public String getString(String key) {
+        Object value = value(key, StandInValue.STRING);
+        return value == null ? "" : (String) value;
+    }
+
+    public byte[] getByteArray(String key) {
+        Object value = value(key, StandInValue.BYTE_ARRAY);
+        return value == null ? new byte[0] : (byte[]) value;
+    }
+
+    public int[] getIntArray(String key) {
+        Object value = value(key, StandInValue.INT_ARRAY);
+        return value == null ? new int[0] : (int[]) value;
+    }
+
+    public boolean getBoolean(String key) {
+        return getByte(key) != 0;
+    }
+
+    public StandInCompound getCompound(String key) {
+        StandInTag value = map.get(key);
+        return value instanceof StandInCompound ? (StandInCompound) value : newCompound();
+    }
+
+    private Object value(String key, byte typeId) {
+        StandInTag value = map.get(key);
+        return value != null && value.getTypeId() == typeId ? ((StandInValue) value).getValue() : null;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        for (Map.Entry<String, StandInTag> entry : map.entrySet()) {
+            out.writeByte(entry.getValue().getTypeId());
+            out.writeUTF(entry.getKey());
+            entry.getValue().write(out);
+        }
+        out.writeByte(0);
+    }
+
+    private void read(DataInput in) throws IOException {
+        byte typeId;
+        while ((typeId = in.readByte()) != 0) {
+            String key = in.readUTF();
+            if (typeId == TYPE_ID) {
+                StandInCompound compound = newCompound();
+                compound.read(in);
+                map.put(key, compound);
+            } else map.put(key, newValue(typeId, StandInValue.read(typeId, in)));
+        }
+    }
+
+    /**
+     * Writes a compound the way the NBT stream tools do. The format is close to Minecraft's (type, name, payload) but
+     * not the same, it only has to read what it wrote.
+     */
+    public static void writeRoot(StandInCompound compound, DataOutput out) throws IOException {
+        out.writeByte(TYPE_ID);
+        out.writeUTF("");
+        compound.write(out);
+    }
+
+    /**
+     * Reads a compound written by {@link #writeRoot(StandInCompound, DataOutput)}.
+     *
+     * @param compound empty compound of the version to read into
+     * @return compound
+     */
+    public static <T extends StandInCompound> T readRoot(T compound, DataInput in) throws IOException {
+        if (in.readByte() != TYPE_ID)
+            throw new IOException("Root tag must be a compound.");
+
+        in.readUTF();
+        ((StandInCompound) compound).read(in);
+        return compound;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.standin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Color;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.inventory.meta.LeatherArmorMeta;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.BiFunction;
+
+/**
+ * Stand-in for the CraftBukkit item, a Bukkit item backed by an NMS item (the handle). Of the item meta only the
+ * display name, the lore and the leather armor color are kept in the tag, which is all the plugin uses. The
+ * CraftItemStack of each version holds the handle (the plugin reads it by its field) and adds the static copy methods.
+ */
+public abstract class StandInCraftItem extends ItemStack {
+
+    /**
+     * @return the NMS item backing this one
+     */
+    protected abstract StandInItem getHandle();
+
+    @Override
+    public abstract StandInCraftItem clone();
+
+    /**
+     * Copies a Bukkit item to an NMS item, the way asNMSCopy does.
+     *
+     * @param original the item to copy
+     * @param newItem creates an NMS item of the version
+     * @return the copy
+     */
+    protected static StandInItem copyToNMS(ItemStack original,
+                                           BiFunction<String, Integer, ? extends StandInItem> newItem) {
+        if (original instanceof StandInCraftItem)
+            return ((StandInCraftItem) original).getHandle().cloneItemStack();
+
+        if (original == null || original.getType() == Material.AIR)
+            return newItem.apply(Material.AIR.name(), 0);
+
+        StandInItem copy = newItem.apply(original.getType().name(), original.getAmount());
+        if (original.hasItemMeta()) copy.tag = applyMeta(copy.newCompound(), original.getItemMeta());
+        return copy;
+    }
+
+    @Override
+    public Material getType() {
+        Material type = Material.getMaterial(getHandle().getId());
+        return type == null ? Material.AIR : type;
+    }
+
+    @Override
+    public void setType(Material type) {
+        getHandle().setId(type.name());
+    }
+
+    @Override
+    public int getAmount() {
+        return getHandle().getCount();
+    }
+
+    @Override
+    public void setAmount(int amount) {
+        getHandle().setCount(amount);
+    }
+
+    @Override
+    public short getDurability() {
+        return 0;
+    }
+
+    @Override
+    public int getMaxStackSize() {
+        return getType().getMaxStackSize();
+    }
+
+    @Override
+    public boolean hasItemMeta() {
+        return getHandle().getTag() != null && getHandle().getTag().hasKey("display");
+    }
+
+    @Override
+    public ItemMeta getItemMeta() {
+        ItemMeta meta = Bukkit.getItemFactory().getItemMeta(getType());
+        if (meta == null || !hasItemMeta())
+            return meta;
+
+        StandInCompound display = getHandle().getTag().getCompound("display");
+        if (display.hasKey("Name")) meta.setDisplayName(display.getString("Name"));
+        if (display.hasKey("Lore")) meta.setLore(Arrays.asList(display.getString("Lore").split("\n", -1)));
+        if (display.hasKey("color") && meta instanceof LeatherArmorMeta)
+            ((LeatherArmorMeta) meta).setColor(Color.fromRGB(display.getInt("color")));
+
+        return meta;
+    }
+
+    @Override
+    public boolean setItemMeta(ItemMeta meta) {
+        StandInItem handle = getHandle();
+        if (handle.tag != null) handle.tag.remove("display");
+        if (meta != null) handle.tag = applyMeta(handle.tag == null ? handle.newCompound() : handle.tag, meta);
+        return true;
+    }
+
+    private static StandInCompound applyMeta(StandInCompound tag, ItemMeta meta) {
+        StandInCompound display = tag.newCompound();
+        if (meta.hasDisplayName()) display.setString("Name", meta.getDisplayName());
+        if (meta.hasLore()) display.setString("Lore", String.join("\n", meta.getLore()));
+        if (meta instanceof LeatherArmorMeta) display.setInt("color", ((LeatherArmorMeta) meta).getColor().asRGB());
+
+        tag.put("display", display);
+        return tag;
+    }
+
+    @Override
+    public boolean isSimilar(ItemStack stack) {
+        if (stack == this)
+            return true;
+
+        if (stack == null || getType() != stack.getType())
+            return false;
+
+        StandInCompound tag;
+        if (stack instanceof StandInCraftItem) {
+            tag = ((StandInCraftItem) stack).getHandle().getTag();
+        } else tag = stack.hasItemMeta() ? applyMeta(getHandle().newCompound(), stack.getItemMeta()) : null;
+
+        return Objects.equals(getHandle().getTag(), tag);
+    }
+
+    @Override
+    public int hashCode() {
+        return (31 * getType().hashCode() + getAmount()) * 31 + Objects.hashCode(getHandle().getTag());
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.standin;
+
+import java.util.function.BiFunction;
+
+/**
+ * The furnace of the stand-ins. It burns fuel and smelts its input roughly like the real one, every input takes 200
+ * ticks and smelts into {@link #resultOf(String)}. The items are saved in a compound keyed by slot instead of a list.
+ * The TileEntityFurnace of each version keeps one and exposes it under the names of that version.
+ */
+public class StandInFurnace {
+
+    public static final int SLOT_INPUT = 0;
+    public static final int SLOT_FUEL = 1;
+    public static final int SLOT_RESULT = 2;
+
+    private static final int COOK_TIME_TOTAL = 200;
+
+    private final BiFunction<String, Integer, ? extends StandInItem> newItem;
+    private final StandInItem[] items = new StandInItem[3];
+    private int burnTime;
+    private int cookTime;
+    private int cookTimeTotal = COOK_TIME_TOTAL;
+
+    /**
+     * @param newItem creates an item of the version the furnace is for
+     */
+    public StandInFurnace(BiFunction<String, Integer, ? extends StandInItem> newItem) {
+        this.newItem = newItem;
+    }
+
+    public StandInItem getItem(int slot) {
+        return items[slot];
+    }
+
+    public void setItem(int slot, StandInItem item) {
+        items[slot] = item;
+    }
+
+    public void tick() {
+        if (isBurning())
+            burnTime--;
+
+        StandInItem fuel = items[SLOT_FUEL];
+        if (isBurning() || (!isEmpty(fuel) && !isEmpty(items[SLOT_INPUT]))) {
+            if (!isBurning() && canSmelt()) {
+                burnTime = fuelTime(fuel);
+                if (burnTime > 0) {
+                    fuel.setCount(fuel.getCount() - 1);
+                    if (fuel.getCount() == 0)
+                        items[SLOT_FUEL] = "LAVA_BUCKET".equals(fuel.getId()) ? newItem.apply("BUCKET", 1) : null;
+                }
+            }
+
+            if (isBurning() && canSmelt()) {
+                if (++cookTime == cookTimeTotal) {
+                    cookTime = 0;
+                    smelt();
+                }
+            } else cookTime = 0;
+        } else if (cookTime > 0) {
+            cookTime = Math.max(0, cookTime - 2);
+        }
+    }
+
+    public boolean isBurning() {
+        return burnTime > 0;
+    }
+
+    public void save(StandInCompound compound) {
+        compound.setShort("BurnTime", (short) burnTime);
+        compound.setShort("CookTime", (short) cookTime);
+        compound.setShort("CookTimeTotal", (short) cookTimeTotal);
+
+        StandInCompound itemsCompound = compound.newCompound();
+        for (int i = 0; i < items.length; i++) {
+            if (isEmpty(items[i]))
+                continue;
+
+            StandInCompound itemCompound = compound.newCompound();
+            items[i].saveTo(itemCompound);
+            itemsCompound.put(Integer.toString(i), itemCompound);
+        }
+        compound.put("Items", itemsCompound);
+    }
+
+    public void load(StandInCompound compound) {
+        burnTime = compound.getShort("BurnTime");
+        cookTime = compound.getShort("CookTime");
+        cookTimeTotal = compound.hasKey("CookTimeTotal") ? compound.getShort("CookTimeTotal") : COOK_TIME_TOTAL;
+
+        StandInCompound itemsCompound = compound.getCompound("Items");
+        for (int i = 0; i < items.length; i++) {
+            String slot = Integer.toString(i);
+            items[i] = null;
+            if (itemsCompound.hasKey(slot)) {
+                items[i] = newItem.apply("AIR", 0);
+                items[i].load(itemsCompound.getCompound(slot));
+            }
+        }
+    }
+
+    /**
+     * @param fuel the fuel, may be null
+     * @return number of ticks the fuel burns for
+     */
+    public static int fuelTime(StandInItem fuel) {
+        if (isEmpty(fuel))
+            return 0;
+
+        switch (fuel.getId()) {
+            case "COAL":
+            case "CHARCOAL": return 1600;
+            case "COAL_BLOCK": return 16000;
+            case "LAVA_BUCKET": return 20000;
+            default: return fuel.getId().endsWith("_PLANKS") || fuel.getId().endsWith("_LOG") ? 300 : 0;
+        }
+    }
+
+    private boolean canSmelt() {
+        StandInItem input = items[SLOT_INPUT], result = items[SLOT_RESULT];
+        if (isEmpty(input))
+            return false;
+
+        return isEmpty(result) || (result.getId().equals(resultOf(input.getId())) && result.getCount() < 64);
+    }
+
+    private void smelt() {
+        StandInItem input = items[SLOT_INPUT], result = items[SLOT_RESULT];
+        if (isEmpty(result)) {
+            items[SLOT_RESULT] = newItem.apply(resultOf(input.getId()), 1);
+        } else result.setCount(result.getCount() + 1);
+
+        input.setCount(input.getCount() - 1);
+        if (input.getCount() == 0) items[SLOT_INPUT] = null;
+    }
+
+    /**
+     * @param input material name of the input
+     * @return material name of what the input smelts into
+     */
+    public static String resultOf(String input) {
+        switch (input) {
+            case "IRON_ORE": return "IRON_INGOT";
+            case "GOLD_ORE": return "GOLD_INGOT";
+            case "SAND": return "GLASS";
+            case "COBBLESTONE": return "STONE";
+            default: return input;
+        }
+    }
+
+    private static boolean isEmpty(StandInItem item) {
+        return item == null || item.isEmpty();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.standin;
+
+/**
+ * Stand-in for the NMS ItemStack. The item is kept as the name of its Bukkit material. The ItemStack of each version
+ * adds how it is saved to and created from a compound of that version.
+ */
+public abstract class StandInItem implements Cloneable {
+
+    private String id;
+    private int count;
+    protected StandInCompound tag;
+
+    protected StandInItem(String id, int count) {
+        this.id = id;
+        this.count = count;
+    }
+
+    protected StandInItem(StandInCompound compound) {
+        load(compound);
+    }
+
+    /**
+     * @return an empty compound of the same version
+     */
+    protected abstract StandInCompound newCompound();
+
+    public String getId() {
+        return id;
+    }
+
+    void setId(String id) {
+        this.id = id;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public boolean isEmpty() {
+        return count <= 0 || "AIR".equals(id);
+    }
+
+    public StandInCompound getTag() {
+        return tag;
+    }
+
+    public StandInItem cloneItemStack() {
+        try {
+            StandInItem copy = (StandInItem) super.clone();
+            if (tag != null) copy.tag = tag.clone();
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    protected void saveTo(StandInCompound compound) {
+        compound.setString("id", id);
+        compound.setByte("Count", (byte) count);
+        if (tag != null) compound.put("tag", tag.clone());
+    }
+
+    void load(StandInCompound compound) {
+        id = compound.getString("id");
+        count = compound.getByte("Count");
+        tag = compound.hasKey("tag") ? compound.getCompound("tag").clone() : null;
+    }
+}
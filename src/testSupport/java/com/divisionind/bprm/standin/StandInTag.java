@@ -0,0 +1,35 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.standin;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A tag of the NBT stand-ins. The NBTBase of every stand-in version extends it, so the tags of each version are still
+ * their own types (the plugin matches methods by them).
+ */
+public interface StandInTag {
+
+    byte getTypeId();
+
+    StandInTag clone();
+
+    void write(DataOutput out) throws IOException;
+}
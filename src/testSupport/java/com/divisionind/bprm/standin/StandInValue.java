@@ -0,0 +1,143 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.divisionind.bprm.standin;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Stand-in for all of the NMS primitive, string and array tags (NBTTagInt, NBTTagString, ...).
+ */
+public abstract class StandInValue implements StandInTag, Cloneable {
+
+    static final byte BYTE = 1;
+    static final byte SHORT = 2;
+    static final byte INT = 3;
+    static final byte LONG = 4;
+    static final byte FLOAT = 5;
+    static final byte DOUBLE = 6;
+    static final byte BYTE_ARRAY = 7;
+    static final byte STRING = 8;
+    static final byte INT_ARRAY = 11;
+
+    private final byte typeId;
+    private Object value;
+
+    protected StandInValue(byte typeId, Object value) {
+        this.typeId = typeId;
+        this.value = value;
+    }
+
+    @Override
+    public byte getTypeId() {
+        return typeId;
+    }
+
+    Object getValue() {
+        return value;
+    }
+
+    @Override
+    public StandInValue clone() {
+        // the arrays are the only mutable values
+        if (!(value instanceof byte[] || value instanceof int[]))
+            return this;
+
+        try {
+            StandInValue copy = (StandInValue) super.clone();
+            copy.value = value instanceof byte[] ? ((byte[]) value).clone() : ((int[]) value).clone();
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof StandInValue))
+            return false;
+
+        StandInValue other = (StandInValue) o;
+        return typeId == other.typeId && Objects.deepEquals(value, other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        if (value instanceof byte[])
+            return Arrays.hashCode((byte[]) value);
+
+        if (value instanceof int[])
+            return Arrays.hashCode((int[]) value);
+
+        return value.hashCode();
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        switch (typeId) {
+            case BYTE: out.writeByte((byte) value); break;
+            case SHORT: out.writeShort((short) value); break;
+            case INT: out.writeInt((int) value); break;
+            case LONG: out.writeLong((long) value); break;
+            case FLOAT: out.writeFloat((float) value); break;
+            case DOUBLE: out.writeDouble((double) value); break;
+            case STRING: out.writeUTF((String) value); break;
+            case BYTE_ARRAY:
+                byte[] bytes = (byte[]) value;
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                break;
+            case INT_ARRAY:
+                int[] ints = (int[]) value;
+                out.writeInt(ints.length);
+                for (int i : ints) out.writeInt(i);
+                break;
+            default: throw new IOException("Unknown tag type " + typeId);
+        }
+    }
+
+    /**
+     * Reads the payload of a value tag, the counterpart of {@link #write(DataOutput)}.
+     *
+     * @return the value, boxed
+     */
+    static Object read(byte typeId, DataInput in) throws IOException {
+        switch (typeId) {
+            case BYTE: return in.readByte();
+            case SHORT: return in.readShort();
+            case INT: return in.readInt();
+            case LONG: return in.readLong();
+            case FLOAT: return in.readFloat();
+            case DOUBLE: return in.readDouble();
+            case STRING: return in.readUTF();
+            case BYTE_ARRAY:
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return bytes;
+            case INT_ARRAY:
+                int[] ints = new int[in.readInt()];
+                for (int i = 0; i < ints.length; i++) ints[i] = in.readInt();
+                return ints;
+            default: throw new IOException("Unknown tag type " + typeId);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.mojang.serialization;
+
+/**
+ * Stand-in for a value together with the operations of its format.
+ */
+public class Dynamic<T> {
+
+    private final DynamicOps<T> ops;
+    private final T value;
+
+    public Dynamic(DynamicOps<T> ops) {
+        this(ops, null);
+    }
+
+    public Dynamic(DynamicOps<T> ops, T value) {
+        this.ops = ops;
+        this.value = value;
+    }
+
+    public DynamicOps<T> getOps() {
+        return ops;
+    }
+
+    public T getValue() {
+        return value;
+    }
+}
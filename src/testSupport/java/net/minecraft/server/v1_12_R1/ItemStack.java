@@ -16,35 +16,35 @@
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-package com.divisionind.bprm.events.custom;
+package net.minecraft.server.v1_12_R1;
 
-import org.bukkit.Bukkit;
-import org.bukkit.event.Event;
-import org.bukkit.event.HandlerList;
-import org.bukkit.plugin.Plugin;
+import com.divisionind.bprm.standin.StandInItem;
 
-public class GameTickEvent extends Event {
+/**
+ * Stand-in for the NMS ItemStack, see {@link StandInItem}. Pre-1.13 it is read from a compound by its
+ * constructor.
+ */
+public class ItemStack extends StandInItem {
 
-    private static final HandlerList handlers = new HandlerList();
-    private static int taskId;
+    public ItemStack(String id, int count) {
+        super(id, count);
+    }
 
-    public static void initialize(Plugin plugin) {
-        taskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(
-                plugin,
-                () -> Bukkit.getServer().getPluginManager().callEvent(new GameTickEvent()),
-                0L, 1L);
+    public ItemStack(NBTTagCompound compound) {
+        super(compound);
     }
 
-    @Override
-    public HandlerList getHandlers() {
-        return handlers;
+    public void setTag(NBTTagCompound tag) {
+        this.tag = tag;
     }
 
-    public static HandlerList getHandlerList() {
-        return handlers;
+    public NBTTagCompound save(NBTTagCompound compound) {
+        saveTo(compound);
+        return compound;
     }
 
-    public static int getTaskId() {
-        return taskId;
+    @Override
+    protected NBTTagCompound newCompound() {
+        return new NBTTagCompound();
     }
 }
@@ -0,0 +1,48 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.minecraft.server.v1_12_R1;
+
+import com.divisionind.bprm.standin.StandInCompound;
+
+import java.util.Set;
+
+/**
+ * Stand-in for the NMS NBTTagCompound with the pre-1.13 accessor names, the keys are still listed by c(). See
+ * {@link StandInCompound}.
+ */
+public class NBTTagCompound extends StandInCompound implements NBTBase {
+
+    public Set<String> c() {
+        return keys();
+    }
+
+    public NBTBase set(String key, NBTBase value) {
+        return (NBTBase) put(key, value);
+    }
+
+    @Override
+    protected NBTTagCompound newCompound() {
+        return new NBTTagCompound();
+    }
+
+    @Override
+    protected NBTBase newValue(byte typeId, Object value) {
+        return new NBTTagValue(typeId, value);
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.minecraft.server.v1_16_R3;
+
+import com.mojang.datafixers.DSL;
+
+/**
+ * Stand-in for the types the data fixers know about, the field names are obfuscated like on a real server.
+ */
+public class DataConverterTypes {
+
+    public static final DSL.TypeReference a = () -> "level";
+    public static final DSL.TypeReference b = () -> "player";
+    public static final DSL.TypeReference l = () -> "item_stack";
+}
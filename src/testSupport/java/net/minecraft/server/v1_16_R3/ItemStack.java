@@ -0,0 +1,53 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.minecraft.server.v1_16_R3;
+
+import com.divisionind.bprm.standin.StandInItem;
+
+/**
+ * Stand-in for the NMS ItemStack, see {@link StandInItem}.
+ */
+public class ItemStack extends StandInItem {
+
+    public ItemStack(String id, int count) {
+        super(id, count);
+    }
+
+    private ItemStack(NBTTagCompound compound) {
+        super(compound);
+    }
+
+    public static ItemStack a(NBTTagCompound compound) {
+        return new ItemStack(compound);
+    }
+
+    public void setTag(NBTTagCompound tag) {
+        this.tag = tag;
+    }
+
+    public NBTTagCompound save(NBTTagCompound compound) {
+        saveTo(compound);
+        return compound;
+    }
+
+    @Override
+    protected NBTTagCompound newCompound() {
+        return new NBTTagCompound();
+    }
+}
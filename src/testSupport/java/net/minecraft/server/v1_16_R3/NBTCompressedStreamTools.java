@@ -0,0 +1,39 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.minecraft.server.v1_16_R3;
+
+import com.divisionind.bprm.standin.StandInCompound;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Stand-in for the NMS NBT stream tools, see {@link StandInCompound#writeRoot(StandInCompound, DataOutput)}.
+ */
+public class NBTCompressedStreamTools {
+
+    public static void a(NBTTagCompound compound, DataOutput out) throws IOException {
+        StandInCompound.writeRoot(compound, out);
+    }
+
+    public static NBTTagCompound a(DataInputStream in) throws IOException {
+        return StandInCompound.readRoot(new NBTTagCompound(), in);
+    }
+}
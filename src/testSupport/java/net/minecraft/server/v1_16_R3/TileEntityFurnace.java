@@ -0,0 +1,59 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.minecraft.server.v1_16_R3;
+
+import com.divisionind.bprm.standin.StandInFurnace;
+
+/**
+ * Stand-in for the NMS furnace, see {@link StandInFurnace}.
+ */
+public abstract class TileEntityFurnace extends TileEntity {
+
+    private final StandInFurnace furnace = new StandInFurnace(ItemStack::new);
+
+    public ItemStack getItem(int slot) {
+        return (ItemStack) furnace.getItem(slot);
+    }
+
+    public void setItem(int slot, ItemStack item) {
+        furnace.setItem(slot, item);
+    }
+
+    public void tick() {
+        furnace.tick();
+    }
+
+    // only looked up by the plugin
+    private boolean isBurning() {
+        return furnace.isBurning();
+    }
+
+    public NBTTagCompound save(NBTTagCompound compound) {
+        furnace.save(compound);
+        return compound;
+    }
+
+    public void load(IBlockData data, NBTTagCompound compound) {
+        furnace.load(compound);
+    }
+
+    protected int fuelTime(ItemStack fuel) {
+        return StandInFurnace.fuelTime(fuel);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.bukkit.craftbukkit.v1_12_R1.inventory;
+
+import com.divisionind.bprm.standin.StandInCraftItem;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Stand-in for the CraftBukkit item, see {@link StandInCraftItem}.
+ */
+public final class CraftItemStack extends StandInCraftItem {
+
+    private final net.minecraft.server.v1_12_R1.ItemStack handle;
+
+    private CraftItemStack(net.minecraft.server.v1_12_R1.ItemStack handle) {
+        this.handle = handle;
+    }
+
+    public static net.minecraft.server.v1_12_R1.ItemStack asNMSCopy(ItemStack original) {
+        return (net.minecraft.server.v1_12_R1.ItemStack) copyToNMS(original,
+                net.minecraft.server.v1_12_R1.ItemStack::new);
+    }
+
+    public static CraftItemStack asBukkitCopy(net.minecraft.server.v1_12_R1.ItemStack original) {
+        return new CraftItemStack((net.minecraft.server.v1_12_R1.ItemStack) original.cloneItemStack());
+    }
+
+    public static CraftItemStack asCraftCopy(ItemStack original) {
+        return new CraftItemStack(asNMSCopy(original));
+    }
+
+    @Override
+    protected net.minecraft.server.v1_12_R1.ItemStack getHandle() {
+        return handle;
+    }
+
+    @Override
+    public CraftItemStack clone() {
+        return asBukkitCopy(handle);
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.bukkit.craftbukkit.v1_16_R3;
+
+import be.seeseemelk.mockbukkit.ServerMock;
+import net.minecraft.server.v1_16_R3.DedicatedServer;
+
+/**
+ * The server the plugin sees. It lives in the CraftBukkit package of the version the NMS stand-in is for, that is how
+ * {@link com.divisionind.bprm.nms.KnownVersion} detects the version. Everything Bukkit is done by MockBukkit.
+ */
+public class CraftServer extends ServerMock {
+
+    private final DedicatedServer server = new DedicatedServer();
+
+    public DedicatedServer getServer() {
+        return server;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * BackpacksRemastered - remastered version of the popular Backpacks plugin
+ * Copyright (C) 2019, Andrew Howard, <divisionind.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.bukkit.craftbukkit.v1_16_R3.inventory;
+
+import net.minecraft.server.v1_16_R3.TileEntityFurnace;
+
+/**
+ * Stand-in for the furnace inventory. It is not a Bukkit FurnaceInventory, so furnaces can not be opened and are not
+ * fast-forwarded (see FurnaceFastForward), they are always ticked.
+ */
+public class CraftInventoryFurnace extends CraftInventory {
+
+    public CraftInventoryFurnace(TileEntityFurnace furnace) {
+        super(furnace);
+    }
+}